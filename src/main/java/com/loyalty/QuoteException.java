@@ -0,0 +1,39 @@
+package com.loyalty;
+
+/**
+ * A quote failure with the status code it maps to: an HTTP status for REST callers and the
+ * failure code of the reply for event-bus callers.
+ */
+public class QuoteException extends RuntimeException {
+
+    private final int statusCode;
+    private final boolean upstreamFailure;
+
+    public QuoteException(int statusCode, String message) {
+        this(statusCode, message, false);
+    }
+
+    /**
+     * @param upstreamFailure whether the quote failed because the FX or promo service did, so
+     *                        callers can tell it apart from a bug here and retry
+     */
+    public QuoteException(int statusCode, String message, boolean upstreamFailure) {
+        super(message);
+        this.statusCode = statusCode;
+        this.upstreamFailure = upstreamFailure;
+    }
+
+    /**
+     * Returns {@code err} itself if it is a {@link QuoteException}, otherwise wraps it as a 500.
+     */
+    public static QuoteException from(Throwable err) {
+        if (err instanceof QuoteException quoteException) {
+            return quoteException;
+        }
+        return new QuoteException(500, "Internal server error: " + err.getMessage());
+    }
+
+    public int getStatusCode() { return statusCode; }
+
+    public boolean isUpstreamFailure() { return upstreamFailure; }
+}
@@ -0,0 +1,320 @@
+package com.loyalty;
+
+import com.loyalty.cache.RateCache;
+import com.loyalty.config.ServiceSettings;
+import com.loyalty.logic.PointsRuleEngine;
+import com.loyalty.logic.PointsRuleSet;
+import com.loyalty.logic.QuoteCalculator;
+import com.loyalty.metrics.ServiceMetrics;
+import com.loyalty.model.QuoteRequest;
+import com.loyalty.model.QuoteResponse;
+import com.loyalty.tracing.QuoteTrace;
+import com.loyalty.tracing.SlowRequestLog;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Validation, upstream orchestration and calculation for a quote, shared by every transport
+ * the verticle exposes. Failures are reported as {@link QuoteException}.
+ */
+public class QuoteService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuoteService.class);
+
+    private final WebClient webClient;
+    private final PointsRuleEngine ruleEngine;
+    private final Supplier<ServiceSettings> settings;
+    private final ServiceMetrics metrics;
+    private final RateCache rateCache;
+    private final SlowRequestLog slowRequests;
+    private final QuoteCalculator calculator = new QuoteCalculator();
+
+    // Only touched from the owning verticle's event loop
+    private final Map<String, KnownRate> lastKnownFxRates = new HashMap<>();
+    private final Set<String> fxRefreshesInFlight = new HashSet<>();
+
+    public QuoteService(WebClient webClient, PointsRuleEngine ruleEngine, Supplier<ServiceSettings> settings,
+                        ServiceMetrics metrics, RateCache rateCache, SlowRequestLog slowRequests) {
+        this.webClient = webClient;
+        this.ruleEngine = ruleEngine;
+        this.settings = settings;
+        this.metrics = metrics;
+        this.rateCache = rateCache;
+        this.slowRequests = slowRequests;
+    }
+
+    public Future<QuoteResponse> quote(QuoteRequest request) {
+        return quote(request, QuoteTrace.start());
+    }
+
+    /**
+     * Quotes {@code request}, recording each stage in {@code trace}. The finished trace is offered
+     * to the slow request log.
+     */
+    public Future<QuoteResponse> quote(QuoteRequest request, QuoteTrace trace) {
+        return doQuote(request, trace).onComplete(ar -> {
+            String outcome = ar.succeeded() ? "200" : String.valueOf(QuoteException.from(ar.cause()).getStatusCode());
+            trace.finish(outcome, "currency=" + request.getCurrency() + " tier=" + request.getCustomerTier()
+                    + " cabin=" + request.getCabinClass() + " promo=" + (request.getPromoCode() != null));
+            slowRequests.record(trace);
+        });
+    }
+
+    private Future<QuoteResponse> doQuote(QuoteRequest request, QuoteTrace trace) {
+        try {
+            logger.info("Processing quote request for currency={}, fare={}, traceId={}", request.getCurrency(),
+                    request.getFareAmount(), trace.getTraceId());
+
+            ServiceSettings settings = this.settings.get();
+            PointsRuleSet rules = ruleEngine.current();
+
+            QuoteTrace.Span validation = trace.span("validation");
+            String tier = normaliseTier(request);
+            QuoteException invalid = validate(request, tier, rules);
+            validation.end(invalid == null ? "ok" : invalid.getMessage());
+            if (invalid != null) {
+                return Future.failedFuture(invalid);
+            }
+
+            Future<FxRate> fxRateFuture = getFxRate(settings, request.getCurrency(), trace);
+            Future<JsonObject> promoFuture = getPromoInfo(settings, request.getPromoCode(), trace);
+
+            return Future.all(fxRateFuture, promoFuture)
+                    .recover(err -> {
+                        logger.error("Failed to fetch external data for quote", err);
+                        return Future.failedFuture(new QuoteException(500,
+                                "Failed to fetch external data: " + err.getMessage(), true));
+                    })
+                    .map(res -> {
+                        QuoteTrace.Span calculation = trace.span("calculation");
+                        FxRate fxRate = fxRateFuture.result();
+                        double rate = fxRate.rate();
+                        JsonObject promo = promoFuture.result();
+
+                        int promoBonus = promo.getInteger("bonus", 0);
+                        List<String> warnings = new ArrayList<>();
+                        if (promo.getBoolean("expiresSoon", false)) {
+                            warnings.add("PROMO_EXPIRES_SOON");
+                        }
+                        if (fxRate.stale()) {
+                            warnings.add("FX_RATE_STALE");
+                        }
+
+                        QuoteResponse response = calculator.calculate(rules, request, tier, rate, promoBonus,
+                                warnings);
+                        calculation.end();
+                        logger.info("Quote calculated: totalPoints={}, duration={}ms, traceId={}",
+                                response.getTotalPoints(), trace.elapsedMillis(), trace.getTraceId());
+                        return response;
+                    })
+                    .recover(err -> {
+                        if (!(err instanceof QuoteException)) {
+                            logger.error("Internal server error during quote handling", err);
+                        }
+                        return Future.failedFuture(QuoteException.from(err));
+                    });
+        } catch (Exception e) {
+            logger.error("Internal server error during quote handling", e);
+            return Future.failedFuture(new QuoteException(500, "Internal server error: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * The request's customer tier in upper case, or {@code NONE} if it has none. The request itself
+     * is left untouched: over the event bus it is the sender's instance.
+     */
+    private static String normaliseTier(QuoteRequest request) {
+        return request.getCustomerTier() != null ? request.getCustomerTier().toUpperCase() : "NONE";
+    }
+
+    /**
+     * Returns the validation failure for {@code request}, or {@code null} if it is valid.
+     */
+    private QuoteException validate(QuoteRequest request, String tier, PointsRuleSet rules) {
+        if (request.getCurrency() == null || request.getCurrency().trim().length() != 3) {
+            logger.warn("Validation failed: Invalid currency '{}'", request.getCurrency());
+            return new QuoteException(400, "Currency is required and must be a 3-character ISO code");
+        }
+        if (request.getFareAmount() <= 0) {
+            logger.warn("Validation failed: Invalid fare amount {}", request.getFareAmount());
+            return new QuoteException(400, "Fare amount must be greater than zero");
+        }
+
+        if (!rules.hasTier(tier)) {
+            logger.warn("Validation failed: Invalid customer tier '{}'", tier);
+            return new QuoteException(400, "Invalid customer tier: " + tier);
+        }
+
+        if (request.getPromoCode() != null && request.getPromoCode().trim().isEmpty()) {
+            logger.warn("Validation failed: Empty promo code");
+            return new QuoteException(400, "Promo code cannot be empty if provided");
+        }
+        return null;
+    }
+
+    private Future<FxRate> getFxRate(ServiceSettings settings, String currency, QuoteTrace trace) {
+        if ("USD".equalsIgnoreCase(currency))
+            return Future.succeededFuture(new FxRate(1.0, false));
+
+        ServiceSettings.Upstream fxConfig = settings.getFx();
+        String code = currency.toUpperCase();
+        QuoteTrace.Span span = trace.span("fx");
+        // While a background refresh retries the FX service, answer at once instead of waiting on it too
+        KnownRate refreshing = fxRefreshesInFlight.contains(code) ? staleFxRate(code, fxConfig) : null;
+        if (refreshing != null) {
+            metrics.increment("fx.stale.served");
+            span.end("stale");
+            return Future.succeededFuture(new FxRate(refreshing.rate(), true));
+        }
+        return cachedFxRate(settings, currency, trace)
+                .map(rate -> new FxRate(rate, false))
+                .recover(err -> {
+                    KnownRate known = staleFxRate(code, fxConfig);
+                    if (known == null) {
+                        return Future.failedFuture(err);
+                    }
+                    logger.warn("FX service failed for {}, serving last known rate {} ({}ms old): {}", currency,
+                            known.rate(), System.currentTimeMillis() - known.fetchedAt(), err.getMessage());
+                    metrics.increment("fx.stale.served");
+                    refreshFxRateInBackground(settings, currency);
+                    return Future.succeededFuture(new FxRate(known.rate(), true));
+                })
+                .onComplete(ar -> span.end(ar.failed() ? ar.cause().getMessage()
+                        : ar.result().stale() ? "stale" : "ok"));
+    }
+
+    /**
+     * The last known rate for {@code code} if it is still inside the stale window, otherwise {@code null}.
+     */
+    private KnownRate staleFxRate(String code, ServiceSettings.Upstream fxConfig) {
+        KnownRate known = lastKnownFxRates.get(code);
+        if (known == null || System.currentTimeMillis() - known.fetchedAt() > fxConfig.getStaleWindow()) {
+            return null;
+        }
+        return known;
+    }
+
+    /**
+     * The FX rate for {@code currency}, from the cache if present. Cached rates carry the time the
+     * FX service returned them, so the stale fallback measures its window from the upstream fetch
+     * and not from the last cache read.
+     */
+    private Future<Double> cachedFxRate(ServiceSettings settings, String currency, QuoteTrace trace) {
+        ServiceSettings.Upstream fxConfig = settings.getFx();
+        String code = currency.toUpperCase();
+        return rateCache.getOrLoad("fx:" + code, settings.getCache().getFxTtl(), fxConfig.getBudget(),
+                        () -> fetchFxRate(fxConfig, currency, trace).map(rate -> new JsonObject()
+                                .put("rate", rate)
+                                .put("fetchedAt", System.currentTimeMillis())))
+                .map(cached -> {
+                    double rate = cached.getDouble("rate");
+                    if (fxConfig.getStaleWindow() > 0) {
+                        KnownRate fetched = new KnownRate(rate, cached.getLong("fetchedAt"));
+                        lastKnownFxRates.merge(code, fetched,
+                                (known, latest) -> latest.fetchedAt() >= known.fetchedAt() ? latest : known);
+                    }
+                    return rate;
+                });
+    }
+
+    private Future<Double> fetchFxRate(ServiceSettings.Upstream fxConfig, String currency, QuoteTrace trace) {
+        long timeout = fxConfig.getTimeout();
+        int retries = fxConfig.getRetries();
+
+        String fxServiceUrl = fxConfig.getUrl() + currency;
+
+        return retryFuture(trace, "fx", span -> webClient.getAbs(fxServiceUrl)
+                .timeout(timeout)
+                .putHeader(QuoteTrace.TRACEPARENT, trace.traceparent(span))
+                .send()
+                .map(res -> {
+                    if (res.statusCode() == 200) {
+                        return res.bodyAsJsonObject().getDouble("rate", 1.0);
+                    }
+                    throw new RuntimeException("FX service failed with status " + res.statusCode());
+                }), retries);
+    }
+
+    /**
+     * Retries the FX service off the request path while a stale rate is being served. At most one
+     * refresh per currency runs at a time, so an outage does not multiply upstream load, and quotes
+     * for the currency get the stale rate straight away until it finishes.
+     */
+    private void refreshFxRateInBackground(ServiceSettings settings, String currency) {
+        String code = currency.toUpperCase();
+        if (!fxRefreshesInFlight.add(code)) {
+            return;
+        }
+        cachedFxRate(settings, currency, QuoteTrace.start())
+                .onSuccess(rate -> logger.info("Background FX refresh for {} succeeded", currency))
+                .onFailure(err -> logger.warn("Background FX refresh for {} failed: {}", currency, err.getMessage()))
+                .onComplete(done -> fxRefreshesInFlight.remove(code));
+    }
+
+    private Future<JsonObject> getPromoInfo(ServiceSettings settings, String promoCode, QuoteTrace trace) {
+        if (promoCode == null || promoCode.isEmpty()) {
+            return Future.succeededFuture(new JsonObject().put("bonus", 0).put("expiresSoon", false));
+        }
+
+        ServiceSettings.Upstream promoConfig = settings.getPromo();
+        long timeout = promoConfig.getTimeout();
+
+        String promoServiceUrl = promoConfig.getUrl() + promoCode;
+
+        QuoteTrace.Span span = trace.span("promo");
+        // Only 200 responses are cached; anything else falls back to no bonus for this request only
+        return rateCache.getOrLoad("promo:" + promoCode, settings.getCache().getPromoTtl(), timeout,
+                        () -> retryFuture(trace, "promo", attempt -> webClient.getAbs(promoServiceUrl)
+                                .timeout(timeout)
+                                .putHeader(QuoteTrace.TRACEPARENT, trace.traceparent(attempt))
+                                .send()
+                                .map(res -> {
+                                    if (res.statusCode() == 200) {
+                                        return res.bodyAsJsonObject();
+                                    }
+                                    throw new RuntimeException("Promo service returned status " + res.statusCode());
+                                }), 1))
+                .onComplete(ar -> span.end(ar.succeeded() ? "ok" : ar.cause().getMessage()))
+                .recover(t -> {
+                    logger.warn("Promo service timed out or failed for code {}: {}", promoCode, t.getMessage());
+                    return Future.succeededFuture(new JsonObject().put("bonus", 0).put("expiresSoon", false));
+                });
+    }
+
+    private <T> Future<T> retryFuture(QuoteTrace trace, String stage, Function<QuoteTrace.Span, Future<T>> call,
+                                      int retries) {
+        return retryFuture(trace, stage, call, retries, 1);
+    }
+
+    private <T> Future<T> retryFuture(QuoteTrace trace, String stage, Function<QuoteTrace.Span, Future<T>> call,
+                                      int retries, int attempt) {
+        QuoteTrace.Span span = trace.span(stage + ".attempt" + attempt);
+        return call.apply(span)
+                .onComplete(ar -> span.end(ar.succeeded() ? "ok" : ar.cause().getMessage()))
+                .recover(t -> {
+                    if (retries > 1) {
+                        logger.info("Retrying external call, attempts left: {}", retries - 1);
+                        return retryFuture(trace, stage, call, retries - 1, attempt + 1);
+                    }
+                    return Future.failedFuture(t);
+                });
+    }
+
+    private record FxRate(double rate, boolean stale) {
+    }
+
+    private record KnownRate(double rate, long fetchedAt) {
+    }
+}
@@ -1,57 +1,103 @@
 package com.loyalty;
 
-import com.loyalty.logic.QuoteCalculator;
+import com.loyalty.cache.RateCache;
+import com.loyalty.config.ServiceSettings;
+import com.loyalty.eventbus.LocalObjectCodec;
+import com.loyalty.grpc.QuoteGrpcService;
+import com.loyalty.logic.PointsRuleEngine;
+import com.loyalty.metrics.EventLoopMonitor;
+import com.loyalty.metrics.ServiceMetrics;
 import com.loyalty.model.QuoteRequest;
 import com.loyalty.model.QuoteResponse;
+import com.loyalty.tracing.QuoteTrace;
+import com.loyalty.tracing.SlowRequestLog;
 import io.vertx.config.ConfigRetriever;
 import io.vertx.config.ConfigRetrieverOptions;
 import io.vertx.config.ConfigStoreOptions;
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.Promise;
+import io.vertx.core.eventbus.Message;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.http.HttpVersion;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.ext.web.RoutingContext;
 import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.ext.web.client.WebClient;
-import io.vertx.core.Future;
+import io.vertx.grpc.server.GrpcServer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
 
 public class QuoteServiceVerticle extends AbstractVerticle {
 
+    public static final String QUOTE_ADDRESS = "loyalty.points.quote";
+
     private static final Logger logger = LoggerFactory.getLogger(QuoteServiceVerticle.class);
-    private WebClient webClient;
-    private final QuoteCalculator calculator = new QuoteCalculator();
-    private JsonObject appConfig;
+    /** Only the keys {@link QuoteService} caches can be invalidated. */
+    private static final Pattern CACHE_KEY = Pattern.compile("(fx|promo):\\S+");
+    /** Settings read once in {@link #startApp}; a reload records them but cannot apply them. */
+    private static final List<String> RESTART_ONLY = List.of("http", "admin", "eventbus", "grpc", "cache.type",
+            "cache.lockMargin", "cache.nearCacheTtl", "cache.maxEntries", "tracing.slowRequests", "monitoring");
+
+    private final PointsRuleEngine ruleEngine = new PointsRuleEngine();
+    private ConfigRetriever retriever;
+    private RateCache rateCache;
+    private SlowRequestLog slowRequests;
+    private EventLoopMonitor eventLoopMonitor;
+    private QuoteService quoteService;
+    private ServiceMetrics metrics;
+    private volatile ServiceSettings settings;
 
     @Override
     public void start(Promise<Void> startPromise) {
-        webClient = WebClient.create(vertx);
+        metrics = ServiceMetrics.get(vertx);
 
         ConfigStoreOptions fileStore = new ConfigStoreOptions()
                 .setType("file")
                 .setFormat("yaml")
                 .setConfig(new JsonObject().put("path", "application.yaml"));
 
+        // Optional standalone earn rules, so the commercial team can ship rule changes without a release
+        ConfigStoreOptions rulesStore = new ConfigStoreOptions()
+                .setType("file")
+                .setFormat("yaml")
+                .setOptional(true)
+                .setConfig(new JsonObject().put("path", config().getString("rules.path", "rules.yaml")));
+
         ConfigStoreOptions envStore = new ConfigStoreOptions()
                 .setType("env");
 
         ConfigStoreOptions sysStore = new ConfigStoreOptions()
                 .setType("sys");
 
-        ConfigRetriever retriever = ConfigRetriever.create(vertx,
+        retriever = ConfigRetriever.create(vertx,
                 new ConfigRetrieverOptions()
+                        .setScanPeriod(config().getLong("config.scanPeriod", 5000L))
                         .addStore(fileStore)
+                        .addStore(rulesStore)
                         .addStore(envStore)
                         .addStore(sysStore));
 
         retriever.getConfig(ar -> {
             if (ar.succeeded()) {
                 // Programmatic config (like in tests) should override file config
-                this.appConfig = ar.result().mergeIn(config());
+                JsonObject appConfig = ServiceSettings.nest(ar.result().mergeIn(config()));
+                try {
+                    this.settings = ServiceSettings.from(appConfig);
+                    ruleEngine.reload(rules(appConfig));
+                    logger.info("Loaded points rules: {}", ruleEngine.current());
+                    rateCache = RateCache.create(vertx, settings.getCache(), metrics);
+                } catch (IllegalArgumentException e) {
+                    logger.error("Invalid configuration", e);
+                    startPromise.fail(e);
+                    return;
+                }
+                retriever.listen(change -> applyConfig(
+                        ServiceSettings.nest(change.getNewConfiguration().mergeIn(config()))));
                 startApp(startPromise);
             } else {
                 logger.error("Failed to load configuration", ar.cause());
@@ -60,19 +106,114 @@ public class QuoteServiceVerticle extends AbstractVerticle {
         });
     }
 
+    @Override
+    public void stop() {
+        if (retriever != null) {
+            retriever.close();
+        }
+        if (eventLoopMonitor != null) {
+            eventLoopMonitor.stop();
+        }
+    }
+
+    private void applyConfig(JsonObject newConfig) {
+        ServiceSettings previous = settings;
+        ServiceSettings updated;
+        boolean rulesChanged;
+        try {
+            // Validate everything before swapping anything, so a bad change leaves the previous config intact
+            updated = ServiceSettings.from(newConfig);
+            rulesChanged = ruleEngine.reload(rules(newConfig));
+        } catch (IllegalArgumentException e) {
+            logger.error("Rejected configuration change, keeping previous configuration: {}", e.getMessage());
+            metrics.increment("config.reload.rejected");
+            return;
+        }
+        settings = updated;
+        slowRequests.setWindowMillis(updated.getTracing().getSlowWindow());
+
+        List<String> changes = updated.diff(previous);
+        changes.forEach(change -> {
+            if (needsRestart(change)) {
+                logger.warn("Configuration change only takes effect after a restart: {}", change);
+            } else {
+                logger.info("Configuration change applied: {}", change);
+            }
+        });
+        if (rulesChanged) {
+            logger.info("Reloaded points rules: {}", ruleEngine.current());
+        }
+        metrics.increment("config.reload.applied");
+        metrics.add("config.changes", changes.size());
+    }
+
+    private static JsonObject rules(JsonObject config) {
+        Object rules = config.getValue("rules");
+        if (rules != null && !(rules instanceof JsonObject)) {
+            throw new IllegalArgumentException("Invalid value for rules: " + rules);
+        }
+        return (JsonObject) rules;
+    }
+
+    private static boolean needsRestart(String change) {
+        String key = change.substring(0, change.indexOf(':'));
+        return RESTART_ONLY.stream().anyMatch(setting -> key.equals(setting) || key.startsWith(setting + "."));
+    }
+
     private void startApp(Promise<Void> startPromise) {
+        ServiceSettings.Monitoring monitoringConfig = settings.getMonitoring();
+        eventLoopMonitor = new EventLoopMonitor(vertx, context, metrics, monitoringConfig.getInterval(),
+                monitoringConfig.getBlockedThreshold());
+        eventLoopMonitor.start();
+
+        ServiceSettings.Tracing tracingConfig = settings.getTracing();
+        slowRequests = SlowRequestLog.get(vertx, tracingConfig.getSlowRequests(), tracingConfig.getSlowWindow());
+        quoteService = new QuoteService(WebClient.create(vertx), ruleEngine, () -> settings, metrics, rateCache,
+                slowRequests);
+
         Router router = Router.router(vertx);
         router.route().handler(BodyHandler.create());
 
         router.post("/v1/points/quote").handler(this::handleQuote);
 
-        int port = appConfig.getInteger("http.port", 8080);
-        vertx.createHttpServer()
-                .requestHandler(router)
-                .listen(port, http -> {
+        // Cache invalidation makes every node reload from FX and promo, so none of this is on the public port
+        Router adminRouter = Router.router(vertx);
+        adminRouter.get("/admin/metrics").handler(this::handleMetrics);
+        adminRouter.get("/admin/slow-requests").handler(this::handleSlowRequests);
+        adminRouter.delete("/admin/cache/:key").handler(this::handleCacheInvalidation);
+
+        LocalObjectCodec.registerDefault(vertx.eventBus(), QuoteRequest.class);
+        LocalObjectCodec.registerDefault(vertx.eventBus(), QuoteResponse.class);
+        ServiceSettings.Endpoints endpoints = settings.getEndpoints();
+        String address = Objects.requireNonNullElse(endpoints.getEventBusAddress(), QUOTE_ADDRESS);
+        // Local only, so in-process callers are never routed to another node when Vert.x is
+        // clustered and their messages are always passed by reference
+        vertx.eventBus().localConsumer(address, this::handleQuoteMessage);
+
+        GrpcServer grpcServer = GrpcServer.server(vertx);
+        new QuoteGrpcService(quoteService, endpoints.getGrpcMaxBatchSize()).bind(grpcServer);
+
+        int port = endpoints.getHttpPort();
+        ServiceSettings.Admin admin = settings.getAdmin();
+        // Other nodes' invalidations must reach this node before it serves anything from the cache
+        rateCache.ready()
+                .compose(ready -> vertx.createHttpServer().requestHandler(req -> {
+                    // gRPC shares the port with the REST API; gRPC calls are HTTP/2 with a grpc content type
+                    String contentType = req.getHeader(HttpHeaders.CONTENT_TYPE);
+                    if (req.version() == HttpVersion.HTTP_2 && contentType != null
+                            && contentType.startsWith("application/grpc")) {
+                        grpcServer.handle(req);
+                    } else {
+                        router.handle(req);
+                    }
+                }).listen(port))
+                .compose(http -> vertx.createHttpServer().requestHandler(adminRouter)
+                        .listen(admin.getPort(), admin.getHost()))
+                .onComplete(http -> {
                     if (http.succeeded()) {
                         startPromise.complete();
-                        logger.info("HTTP server started on port {}", port);
+                        logger.info("HTTP server started on port {}, admin API on {}:{}", port, admin.getHost(),
+                                admin.getPort());
                     } else {
                         logger.error("Failed to start HTTP server", http.cause());
                         startPromise.fail(http.cause());
@@ -80,21 +221,49 @@ public class QuoteServiceVerticle extends AbstractVerticle {
                 });
     }
 
+    private void handleMetrics(RoutingContext ctx) {
+        ctx.response()
+                .putHeader("content-type", "application/json")
+                .end(metrics.toJson().encode());
+    }
+
+    private void handleSlowRequests(RoutingContext ctx) {
+        ctx.response()
+                .putHeader("content-type", "application/json")
+                .end(slowRequests.toJson().encode());
+    }
+
+    private void handleCacheInvalidation(RoutingContext ctx) {
+        String key = ctx.pathParam("key");
+        if (!CACHE_KEY.matcher(key).matches()) {
+            sendError(ctx, 400, "Cache keys are fx:<currency> or promo:<code>");
+            return;
+        }
+        rateCache.invalidate(key)
+                .onSuccess(v -> {
+                    logger.info("Invalidated cache entry {}", key);
+                    ctx.response().setStatusCode(204).end();
+                })
+                .onFailure(err -> sendError(ctx, 500, "Failed to invalidate cache entry: " + err.getMessage()));
+    }
+
     private void handleQuote(RoutingContext ctx) {
-        long startTime = System.currentTimeMillis();
+        QuoteTrace trace = QuoteTrace.fromTraceparent(ctx.request().getHeader(QuoteTrace.TRACEPARENT));
+        ctx.response().putHeader("x-trace-id", trace.getTraceId());
         try {
+            QuoteTrace.Span decode = trace.span("decode");
             JsonObject body;
             try {
                 body = ctx.body().asJsonObject();
             } catch (Exception e) {
                 logger.warn("Request received with malformed JSON: {}", e.getMessage());
-                sendError(ctx, 400, "Invalid JSON format");
+                rejectUndecodable(ctx, trace, decode, "Invalid JSON format");
                 return;
             }
 
             if (body == null) {
                 logger.warn("Request received with missing body");
-                sendError(ctx, 400, "Request body is missing");
+                rejectUndecodable(ctx, trace, decode, "Request body is missing");
                 return;
             }
 
@@ -103,66 +272,18 @@ public class QuoteServiceVerticle extends AbstractVerticle {
                 request = body.mapTo(QuoteRequest.class);
             } catch (Exception e) {
                 logger.warn("Request received with invalid fields: {}", e.getMessage());
-                sendError(ctx, 400, "Invalid request fields: " + e.getMessage());
-                return;
-            }
-
-            logger.info("Processing quote request for currency={}, fare={}", request.getCurrency(),
-                    request.getFareAmount());
-
-            // Validation
-            if (request.getCurrency() == null || request.getCurrency().trim().length() != 3) {
-                logger.warn("Validation failed: Invalid currency '{}'", request.getCurrency());
-                sendError(ctx, 400, "Currency is required and must be a 3-character ISO code");
-                return;
-            }
-            if (request.getFareAmount() <= 0) {
-                logger.warn("Validation failed: Invalid fare amount {}", request.getFareAmount());
-                sendError(ctx, 400, "Fare amount must be greater than zero");
-                return;
-            }
-
-            String tier = request.getCustomerTier() != null ? request.getCustomerTier().toUpperCase() : "NONE";
-            List<String> validTiers = List.of("NONE", "SILVER", "GOLD", "PLATINUM");
-            if (!validTiers.contains(tier)) {
-                logger.warn("Validation failed: Invalid customer tier '{}'", tier);
-                sendError(ctx, 400, "Invalid customer tier: " + tier);
+                rejectUndecodable(ctx, trace, decode, "Invalid request fields: " + e.getMessage());
                 return;
             }
-            request.setCustomerTier(tier);
+            decode.end();
 
-            if (request.getPromoCode() != null && request.getPromoCode().trim().isEmpty()) {
-                logger.warn("Validation failed: Empty promo code");
-                sendError(ctx, 400, "Promo code cannot be empty if provided");
-                return;
-            }
-
-            Future<Double> fxRateFuture = getFxRate(request.getCurrency());
-            Future<JsonObject> promoFuture = getPromoInfo(request.getPromoCode());
-
-            Future.all(fxRateFuture, promoFuture)
-                    .onSuccess(res -> {
-                        double rate = fxRateFuture.result();
-                        JsonObject promo = promoFuture.result();
-
-                        int promoBonus = promo.getInteger("bonus", 0);
-                        List<String> warnings = new ArrayList<>();
-                        if (promo.getBoolean("expiresSoon", false)) {
-                            warnings.add("PROMO_EXPIRES_SOON");
-                        }
-
-                        QuoteResponse response = calculator.calculate(request, rate, promoBonus, warnings);
-                        long duration = System.currentTimeMillis() - startTime;
-                        logger.info("Quote calculated: totalPoints={}, duration={}ms", response.getTotalPoints(),
-                                duration);
-
-                        ctx.response()
-                                .putHeader("content-type", "application/json")
-                                .end(JsonObject.mapFrom(response).encode());
-                    })
+            quoteService.quote(request, trace)
+                    .onSuccess(response -> ctx.response()
+                            .putHeader("content-type", "application/json")
+                            .end(JsonObject.mapFrom(response).encode()))
                     .onFailure(err -> {
-                        logger.error("Failed to fetch external data for quote", err);
-                        sendError(ctx, 500, "Failed to fetch external data: " + err.getMessage());
+                        QuoteException failure = QuoteException.from(err);
+                        sendError(ctx, failure.getStatusCode(), failure.getMessage());
                     });
         } catch (Exception e) {
             logger.error("Internal server error during quote handling", e);
@@ -170,6 +291,32 @@ public class QuoteServiceVerticle extends AbstractVerticle {
         }
     }
 
+    /**
+     * Answers 400 for a request that never reached {@link QuoteService}, still recording its trace
+     * so rejected requests show up in the slow request log like any other.
+     */
+    private void rejectUndecodable(RoutingContext ctx, QuoteTrace trace, QuoteTrace.Span decode, String message) {
+        decode.end(message);
+        trace.finish("400", "undecodable request");
+        slowRequests.record(trace);
+        sendError(ctx, 400, message);
+    }
+
+    private void handleQuoteMessage(Message<QuoteRequest> message) {
+        QuoteRequest request = message.body();
+        if (request == null) {
+            logger.warn("Event bus quote request received with missing body");
+            message.fail(400, "Request body is missing");
+            return;
+        }
+        quoteService.quote(request, QuoteTrace.fromTraceparent(message.headers().get(QuoteTrace.TRACEPARENT)))
+                .onSuccess(message::reply)
+                .onFailure(err -> {
+                    QuoteException failure = QuoteException.from(err);
+                    message.fail(failure.getStatusCode(), failure.getMessage());
+                });
+    }
+
     private void sendError(RoutingContext ctx, int statusCode, String message) {
         ctx.response()
                 .setStatusCode(statusCode)
@@ -179,62 +326,4 @@ public class QuoteServiceVerticle extends AbstractVerticle {
                         .put("code", statusCode)
                         .encode());
     }
-
-    private Future<Double> getFxRate(String currency) {
-        if ("USD".equalsIgnoreCase(currency))
-            return Future.succeededFuture(1.0);
-
-        JsonObject fxConfig = appConfig.getJsonObject("services").getJsonObject("fx");
-        String baseUrl = fxConfig.getString("url");
-        long timeout = fxConfig.getLong("timeout");
-        int retries = fxConfig.getInteger("retries");
-
-        String fxServiceUrl = baseUrl + currency;
-
-        return retryFuture(() -> webClient.getAbs(fxServiceUrl)
-                .timeout(timeout)
-                .send()
-                .map(res -> {
-                    if (res.statusCode() == 200) {
-                        return res.bodyAsJsonObject().getDouble("rate", 1.0);
-                    }
-                    throw new RuntimeException("FX service failed with status " + res.statusCode());
-                }), retries);
-    }
-
-    private Future<JsonObject> getPromoInfo(String promoCode) {
-        if (promoCode == null || promoCode.isEmpty()) {
-            return Future.succeededFuture(new JsonObject().put("bonus", 0).put("expiresSoon", false));
-        }
-
-        JsonObject promoConfig = appConfig.getJsonObject("services").getJsonObject("promo");
-        String baseUrl = promoConfig.getString("url");
-        long timeout = promoConfig.getLong("timeout");
-
-        String promoServiceUrl = baseUrl + promoCode;
-
-        return webClient.getAbs(promoServiceUrl)
-                .timeout(timeout)
-                .send()
-                .map(res -> {
-                    if (res.statusCode() == 200) {
-                        return res.bodyAsJsonObject();
-                    }
-                    return new JsonObject().put("bonus", 0).put("expiresSoon", false);
-                })
-                .recover(t -> {
-                    logger.warn("Promo service timed out or failed for code {}: {}", promoCode, t.getMessage());
-                    return Future.succeededFuture(new JsonObject().put("bonus", 0).put("expiresSoon", false));
-                });
-    }
-
-    private <T> Future<T> retryFuture(java.util.function.Supplier<Future<T>> supplier, int retries) {
-        return supplier.get().recover(t -> {
-            if (retries > 1) {
-                logger.info("Retrying external call, attempts left: {}", retries - 1);
-                return retryFuture(supplier, retries - 1);
-            }
-            return Future.failedFuture(t);
-        });
-    }
 }
@@ -0,0 +1,140 @@
+package com.loyalty.cache;
+
+import com.loyalty.metrics.ServiceMetrics;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.AsyncMap;
+import io.vertx.core.shareddata.Lock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * {@link RateCache} backed by Vert.x clustered shared data, so all nodes see one copy of each
+ * rate. A cluster-wide lock per key makes sure only one node calls the upstream on a miss; the
+ * others wait and read its result. They wait for the loader's own timeout plus a margin, and a
+ * node that still cannot get the lock fails rather than calling the upstream itself. A short-lived
+ * near cache avoids a cluster round trip per quote and is cleared on every node through an
+ * event-bus invalidation broadcast.
+ *
+ * <p>Without a cluster manager Vert.x falls back to local shared data.
+ */
+public class ClusteredRateCache implements RateCache {
+
+    public static final String INVALIDATION_ADDRESS = "loyalty.cache.invalidate";
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusteredRateCache.class);
+    private static final String MAP_NAME = "loyalty.rates";
+    private static final String LOCK_PREFIX = "loyalty.rates.lock.";
+
+    private final Vertx vertx;
+    private final long lockMargin;
+    private final long nearCacheTtl;
+    private final ServiceMetrics metrics;
+
+    // Only touched from the owning verticle's event loop
+    private final ExpiringEntries nearCache;
+    private final Map<String, Future<JsonObject>> inFlight = new HashMap<>();
+    private final MessageConsumer<String> invalidations;
+
+    ClusteredRateCache(Vertx vertx, long lockMargin, long nearCacheTtl, int maxEntries, ServiceMetrics metrics) {
+        this.vertx = vertx;
+        this.lockMargin = lockMargin;
+        this.nearCacheTtl = nearCacheTtl;
+        this.metrics = metrics;
+        this.nearCache = new ExpiringEntries(new HashMap<>(), maxEntries, metrics);
+        this.invalidations = vertx.eventBus().<String>consumer(INVALIDATION_ADDRESS,
+                message -> nearCache.remove(message.body()));
+    }
+
+    /**
+     * Completes once this node's invalidation consumer is registered with the cluster, after which
+     * it receives invalidations published by other nodes.
+     */
+    @Override
+    public Future<Void> ready() {
+        Promise<Void> registered = Promise.promise();
+        invalidations.completionHandler(registered);
+        return registered.future();
+    }
+
+    @Override
+    public Future<JsonObject> getOrLoad(String key, long ttlMillis, long loadTimeoutMillis,
+                                        Supplier<Future<JsonObject>> loader) {
+        if (ttlMillis <= 0) {
+            return loader.get();
+        }
+        JsonObject near = nearCache.get(key);
+        if (near != null) {
+            metrics.increment("cache.hit");
+            return Future.succeededFuture(near);
+        }
+        Future<JsonObject> pending = inFlight.get(key);
+        if (pending != null) {
+            return pending;
+        }
+        Future<JsonObject> lookup = map()
+                .compose(map -> map.get(key)
+                        .compose(cached -> {
+                            if (cached != null) {
+                                metrics.increment("cache.hit");
+                                return Future.succeededFuture(cached);
+                            }
+                            return loadOnce(map, key, ttlMillis, loadTimeoutMillis, loader);
+                        }))
+                .onSuccess(value -> nearCache.put(key, value, Math.min(nearCacheTtl, ttlMillis)));
+        inFlight.put(key, lookup);
+        lookup.onComplete(done -> inFlight.remove(key));
+        return lookup;
+    }
+
+    private Future<JsonObject> loadOnce(AsyncMap<String, JsonObject> map, String key, long ttlMillis,
+                                        long loadTimeoutMillis, Supplier<Future<JsonObject>> loader) {
+        metrics.increment("cache.miss");
+        return vertx.sharedData().getLockWithTimeout(LOCK_PREFIX + key, loadTimeoutMillis + lockMargin)
+                .compose(lock -> map.get(key)
+                        // Another node may have loaded it while we waited for the lock
+                        .compose(cached -> cached != null ? Future.succeededFuture(cached) : load(map, key, ttlMillis,
+                                loader))
+                        .onComplete(done -> lock.release()),
+                        lockFailure -> map.get(key).compose(cached -> {
+                            if (cached != null) {
+                                return Future.succeededFuture(cached);
+                            }
+                            // Loading anyway would defeat single-flight exactly when the upstream is struggling
+                            logger.warn("Could not acquire cache lock for {}: {}", key, lockFailure.getMessage());
+                            metrics.increment("cache.lock.timeout");
+                            return Future.failedFuture("Timed out waiting for another node to load " + key);
+                        }));
+    }
+
+    private Future<JsonObject> load(AsyncMap<String, JsonObject> map, String key, long ttlMillis,
+                                    Supplier<Future<JsonObject>> loader) {
+        metrics.increment("cache.load");
+        return loader.get().compose(value -> map.put(key, value, ttlMillis)
+                .map(value)
+                .otherwise(err -> {
+                    logger.warn("Could not store {} in the shared cache: {}", key, err.getMessage());
+                    return value;
+                }));
+    }
+
+    @Override
+    public Future<Void> invalidate(String key) {
+        nearCache.remove(key);
+        return map()
+                .compose(map -> map.remove(key))
+                .onSuccess(removed -> vertx.eventBus().publish(INVALIDATION_ADDRESS, key))
+                .mapEmpty();
+    }
+
+    private Future<AsyncMap<String, JsonObject>> map() {
+        return vertx.sharedData().getAsyncMap(MAP_NAME);
+    }
+}
@@ -0,0 +1,103 @@
+package com.loyalty.cache;
+
+import com.loyalty.metrics.ServiceMetrics;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cached values with a per-entry expiry and a size limit. Expired entries are dropped when they
+ * are read; when the limit is reached, all expired entries are swept and, if that is not enough,
+ * the entry closest to expiry is evicted. Promo codes come from callers, so without the limit a
+ * stream of made-up codes would grow the cache without bound.
+ *
+ * <p>An index ordered by expiry keeps making room at O(log n) per entry removed, rather than a
+ * scan of the whole cache on every insert at the limit.
+ *
+ * <p>Thread safety is that of the backing map; with a concurrent map the limit is approximate.
+ */
+final class ExpiringEntries {
+
+    private static final Comparator<Entry> BY_EXPIRY = Comparator.comparingLong(Entry::expiresAt)
+            .thenComparingLong(Entry::sequence);
+
+    private final Map<String, Entry> entries;
+    // Every entry in the map, soonest expiry first, mapped to its key
+    private final NavigableMap<Entry, String> byExpiry = new ConcurrentSkipListMap<>(BY_EXPIRY);
+    private final AtomicLong sequence = new AtomicLong();
+    private final int maxEntries;
+    private final ServiceMetrics metrics;
+
+    ExpiringEntries(Map<String, Entry> entries, int maxEntries, ServiceMetrics metrics) {
+        this.entries = entries;
+        this.maxEntries = maxEntries;
+        this.metrics = metrics;
+    }
+
+    /**
+     * The live value for {@code key}, or {@code null} if there is none or it has expired.
+     */
+    JsonObject get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt() <= System.currentTimeMillis()) {
+            if (entries.remove(key, entry)) {
+                byExpiry.remove(entry);
+            }
+            return null;
+        }
+        return entry.value();
+    }
+
+    void put(String key, JsonObject value, long ttlMillis) {
+        if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+            makeRoom();
+        }
+        Entry entry = new Entry(value, System.currentTimeMillis() + ttlMillis, sequence.incrementAndGet());
+        Entry replaced = entries.put(key, entry);
+        byExpiry.put(entry, key);
+        if (replaced != null) {
+            byExpiry.remove(replaced);
+        }
+    }
+
+    void remove(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            byExpiry.remove(removed);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private void makeRoom() {
+        long now = System.currentTimeMillis();
+        Map.Entry<Entry, String> soonest;
+        while ((soonest = byExpiry.firstEntry()) != null) {
+            Entry entry = soonest.getKey();
+            boolean expired = entry.expiresAt() <= now;
+            if (!expired && entries.size() < maxEntries) {
+                return;
+            }
+            // An index entry whose key has since been replaced or removed is just dropped
+            if (byExpiry.remove(entry) != null && entries.remove(soonest.getValue(), entry) && !expired) {
+                metrics.increment("cache.evicted");
+            }
+        }
+    }
+
+    /**
+     * @param sequence insertion order, so entries expiring in the same millisecond stay distinct
+     *                 in the expiry index
+     */
+    record Entry(JsonObject value, long expiresAt, long sequence) {
+    }
+}
@@ -0,0 +1,93 @@
+package com.loyalty.cache;
+
+import com.loyalty.metrics.ServiceMetrics;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * In-memory {@link RateCache} shared by every verticle instance of one {@link Vertx}.
+ */
+public final class LocalRateCache implements RateCache, Shareable {
+
+    private static final String SHARED_MAP = "loyalty.cache";
+    private static final String KEY = "local";
+
+    private final ExpiringEntries entries;
+    private final Map<String, Future<JsonObject>> inFlight = new ConcurrentHashMap<>();
+    private final ServiceMetrics metrics;
+
+    LocalRateCache(int maxEntries, ServiceMetrics metrics) {
+        this.entries = new ExpiringEntries(new ConcurrentHashMap<>(), maxEntries, metrics);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the cache shared by this {@link Vertx}. The size limit is fixed by the first caller.
+     */
+    static LocalRateCache get(Vertx vertx, int maxEntries, ServiceMetrics metrics) {
+        return (LocalRateCache) vertx.sharedData()
+                .<String, LocalRateCache>getLocalMap(SHARED_MAP)
+                .computeIfAbsent(KEY, k -> new LocalRateCache(maxEntries, metrics));
+    }
+
+    @Override
+    public Future<JsonObject> getOrLoad(String key, long ttlMillis, long loadTimeoutMillis,
+                                        Supplier<Future<JsonObject>> loader) {
+        if (ttlMillis <= 0) {
+            return loader.get();
+        }
+        JsonObject cached = entries.get(key);
+        if (cached != null) {
+            metrics.increment("cache.hit");
+            return Future.succeededFuture(cached);
+        }
+        metrics.increment("cache.miss");
+        Promise<JsonObject> load = Promise.promise();
+        Future<JsonObject> pending = inFlight.putIfAbsent(key, load.future());
+        if (pending != null) {
+            return onCallerContext(pending);
+        }
+        metrics.increment("cache.load");
+        loader.get()
+                .onSuccess(value -> entries.put(key, value, ttlMillis))
+                .onComplete(result -> {
+                    inFlight.remove(key);
+                    load.handle(result);
+                });
+        return load.future();
+    }
+
+    /**
+     * A load started by another verticle completes on that verticle's event loop; hop back so the
+     * waiting caller keeps running on its own.
+     */
+    private static Future<JsonObject> onCallerContext(Future<JsonObject> shared) {
+        Context context = Vertx.currentContext();
+        if (context == null) {
+            return shared;
+        }
+        Promise<JsonObject> promise = Promise.promise();
+        shared.onComplete(result -> {
+            if (Vertx.currentContext() == context) {
+                promise.handle(result);
+            } else {
+                context.runOnContext(v -> promise.handle(result));
+            }
+        });
+        return promise.future();
+    }
+
+    @Override
+    public Future<Void> invalidate(String key) {
+        entries.remove(key);
+        return Future.succeededFuture();
+    }
+}
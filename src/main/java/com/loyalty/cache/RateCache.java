@@ -0,0 +1,59 @@
+package com.loyalty.cache;
+
+import com.loyalty.config.ServiceSettings;
+import com.loyalty.metrics.ServiceMetrics;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.function.Supplier;
+
+/**
+ * Cache tier in front of the FX and promo services. Implementations load each key at most once
+ * at a time (single-flight) and only cache successful loads.
+ */
+public interface RateCache {
+
+    /**
+     * Returns the cached value for {@code key}, or runs {@code loader} and caches its result for
+     * {@code ttlMillis}. A TTL of 0 or less bypasses the cache. {@code loadTimeoutMillis} is the
+     * longest {@code loader} can take; callers waiting on another caller's load wait about as long.
+     */
+    Future<JsonObject> getOrLoad(String key, long ttlMillis, long loadTimeoutMillis,
+                                 Supplier<Future<JsonObject>> loader);
+
+    /**
+     * Drops {@code key} everywhere the cache is shared.
+     */
+    Future<Void> invalidate(String key);
+
+    /**
+     * Completes once the cache can serve requests; for a shared cache, once it receives
+     * invalidations from the other nodes.
+     */
+    default Future<Void> ready() {
+        return Future.succeededFuture();
+    }
+
+    /**
+     * Creates the cache selected by {@code cache.type}: {@code local} (default) shares entries
+     * between the verticles of this process, {@code clustered} between all nodes of the cluster.
+     * Throws {@link IllegalArgumentException} for {@code clustered} on a Vert.x instance that is
+     * not clustered, where shared data would silently stay local to the process.
+     */
+    static RateCache create(Vertx vertx, ServiceSettings.Cache config, ServiceMetrics metrics) {
+        switch (config.getType()) {
+            case "local":
+                return LocalRateCache.get(vertx, config.getMaxEntries(), metrics);
+            case "clustered":
+                if (!vertx.isClustered()) {
+                    throw new IllegalArgumentException(
+                            "'cache.type' is 'clustered' but Vert.x is not clustered; start it with -cluster");
+                }
+                return new ClusteredRateCache(vertx, config.getLockMargin(), config.getNearCacheTtl(),
+                        config.getMaxEntries(), metrics);
+            default:
+                throw new IllegalArgumentException("Unknown cache type: " + config.getType());
+        }
+    }
+}
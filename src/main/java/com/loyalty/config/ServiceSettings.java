@@ -0,0 +1,387 @@
+package com.loyalty.config;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the runtime-tunable settings. A new snapshot is built for every
+ * configuration change and swapped in as a whole, so a request never sees half of an update.
+ */
+public final class ServiceSettings {
+
+    /** Config sections that are diffed and logged when the configuration changes. */
+    private static final List<String> TRACKED_SECTIONS = List.of("http", "admin", "eventbus", "grpc", "services",
+            "cache", "tracing", "monitoring", "rules");
+
+    private final JsonObject source;
+    private final Upstream fx;
+    private final Upstream promo;
+    private final Cache cache;
+    private final Tracing tracing;
+    private final Monitoring monitoring;
+    private final Endpoints endpoints;
+    private final Admin admin;
+
+    private ServiceSettings(JsonObject source, Upstream fx, Upstream promo, Cache cache, Tracing tracing,
+                            Monitoring monitoring, Endpoints endpoints, Admin admin) {
+        this.source = source;
+        this.fx = fx;
+        this.promo = promo;
+        this.cache = cache;
+        this.tracing = tracing;
+        this.monitoring = monitoring;
+        this.endpoints = endpoints;
+        this.admin = admin;
+    }
+
+    /**
+     * Moves dotted top-level keys, such as {@code http.port} from a deployment config or a system
+     * property, into their sections, so every setting has one place however it was supplied. A
+     * dotted key wins over the same setting inside a section.
+     */
+    public static JsonObject nest(JsonObject config) {
+        JsonObject nested = config.copy();
+        List<String> dotted = new ArrayList<>();
+        for (String key : config.fieldNames()) {
+            if (key.indexOf('.') > 0) {
+                dotted.add(key);
+            }
+        }
+        for (String key : dotted) {
+            String[] path = key.split("\\.");
+            JsonObject value = new JsonObject().put(path[path.length - 1], nested.remove(key));
+            for (int i = path.length - 2; i >= 0; i--) {
+                value = new JsonObject().put(path[i], value);
+            }
+            nested.mergeIn(value, true);
+        }
+        return nested;
+    }
+
+    /**
+     * Parses the merged configuration. Throws {@link IllegalArgumentException} if a required
+     * upstream setting is missing, or any setting is out of range or of the wrong type.
+     */
+    public static ServiceSettings from(JsonObject config) {
+        JsonObject services = section(config, "", "services", null);
+        if (services == null) {
+            throw new IllegalArgumentException("Missing 'services' configuration");
+        }
+        Upstream fx = Upstream.from("fx", section(services, "services.", "fx", null));
+        Upstream promo = Upstream.from("promo", section(services, "services.", "promo", null));
+        Cache cache = Cache.from(section(config, "", "cache", new JsonObject()));
+        Tracing tracing = Tracing.from(section(config, "", "tracing", new JsonObject()));
+        Monitoring monitoring = Monitoring.from(section(config, "", "monitoring", new JsonObject()));
+        Endpoints endpoints = Endpoints.from(config);
+        Admin admin = Admin.from(section(config, "", "admin", new JsonObject()));
+        return new ServiceSettings(config.copy(), fx, promo, cache, tracing, monitoring, endpoints, admin);
+    }
+
+    public Upstream getFx() { return fx; }
+
+    public Upstream getPromo() { return promo; }
+
+    public Cache getCache() { return cache; }
+
+    public Tracing getTracing() { return tracing; }
+
+    public Monitoring getMonitoring() { return monitoring; }
+
+    public Endpoints getEndpoints() { return endpoints; }
+
+    public Admin getAdmin() { return admin; }
+
+    public JsonObject getSource() { return source; }
+
+    /**
+     * Lists the tracked settings that differ from {@code previous}, one "key: old -> new" entry each.
+     */
+    public List<String> diff(ServiceSettings previous) {
+        Map<String, Object> before = flatten(previous.source);
+        Map<String, Object> after = flatten(source);
+        List<String> changes = new ArrayList<>();
+        for (Map.Entry<String, Object> entry : after.entrySet()) {
+            Object old = before.remove(entry.getKey());
+            if (!Objects.equals(old, entry.getValue())) {
+                changes.add(entry.getKey() + ": " + old + " -> " + entry.getValue());
+            }
+        }
+        before.forEach((key, old) -> changes.add(key + ": " + old + " -> null"));
+        return changes;
+    }
+
+    /*
+     * Typed reads. JsonObject's own getters throw ClassCastException for a value of the wrong type
+     * (a YAML typo, or an env or system property override), which callers only expect for bugs;
+     * here it is rejected like any other invalid setting. {@code prefix} is the dotted path of
+     * {@code config}, for the message.
+     */
+
+    private static JsonObject section(JsonObject config, String prefix, String key, JsonObject defaultValue) {
+        return value(config, prefix, key, JsonObject.class, "a section", defaultValue);
+    }
+
+    private static String string(JsonObject config, String prefix, String key, String defaultValue) {
+        return value(config, prefix, key, String.class, "a string", defaultValue);
+    }
+
+    private static long number(JsonObject config, String prefix, String key, long defaultValue) {
+        return value(config, prefix, key, Number.class, "a number", defaultValue).longValue();
+    }
+
+    private static int integer(JsonObject config, String prefix, String key, int defaultValue) {
+        return value(config, prefix, key, Number.class, "a number", defaultValue).intValue();
+    }
+
+    private static <T> T value(JsonObject config, String prefix, String key, Class<T> type, String expected,
+                               T defaultValue) {
+        Object value = config.getValue(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException("'" + prefix + key + "' must be " + expected + ", not '" + value + "'");
+        }
+        return type.cast(value);
+    }
+
+    private static Map<String, Object> flatten(JsonObject config) {
+        Map<String, Object> flat = new TreeMap<>();
+        for (String section : TRACKED_SECTIONS) {
+            Object value = config.getValue(section);
+            if (value != null) {
+                flatten(section, value, flat);
+            }
+        }
+        return flat;
+    }
+
+    private static void flatten(String prefix, Object value, Map<String, Object> flat) {
+        if (value instanceof JsonObject json) {
+            for (String key : json.fieldNames()) {
+                flatten(prefix + "." + key, json.getValue(key), flat);
+            }
+        } else {
+            flat.put(prefix, value);
+        }
+    }
+
+    public static final class Upstream {
+        private final String url;
+        private final long timeout;
+        private final int retries;
+        private final long staleWindow;
+
+        private Upstream(String url, long timeout, int retries, long staleWindow) {
+            this.url = url;
+            this.timeout = timeout;
+            this.retries = retries;
+            this.staleWindow = staleWindow;
+        }
+
+        static Upstream from(String name, JsonObject config) {
+            String prefix = "services." + name + ".";
+            String url = config == null ? null : string(config, prefix, "url", null);
+            if (url == null) {
+                throw new IllegalArgumentException("Missing '" + prefix + "url' configuration");
+            }
+            long timeout = number(config, prefix, "timeout", 0L);
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("'services." + name + ".timeout' must be greater than zero");
+            }
+            int retries = integer(config, prefix, "retries", 1);
+            if (retries < 1) {
+                throw new IllegalArgumentException("'services." + name + ".retries' must be at least 1");
+            }
+            long staleWindow = number(config, prefix, "staleWindow", 0L);
+            if (staleWindow < 0) {
+                throw new IllegalArgumentException("'services." + name + ".staleWindow' cannot be negative");
+            }
+            return new Upstream(url, timeout, retries, staleWindow);
+        }
+
+        public String getUrl() { return url; }
+
+        public long getTimeout() { return timeout; }
+
+        public int getRetries() { return retries; }
+
+        /** The longest a call with all its retries can take, in ms. */
+        public long getBudget() { return timeout * retries; }
+
+        /** How long (ms) a last known good value may be served when the upstream fails; 0 disables it. */
+        public long getStaleWindow() { return staleWindow; }
+    }
+
+    public static final class Cache {
+        private final String type;
+        private final long fxTtl;
+        private final long promoTtl;
+        private final long lockMargin;
+        private final long nearCacheTtl;
+        private final int maxEntries;
+
+        private Cache(String type, long fxTtl, long promoTtl, long lockMargin, long nearCacheTtl, int maxEntries) {
+            this.type = type;
+            this.fxTtl = fxTtl;
+            this.promoTtl = promoTtl;
+            this.lockMargin = lockMargin;
+            this.nearCacheTtl = nearCacheTtl;
+            this.maxEntries = maxEntries;
+        }
+
+        static Cache from(JsonObject config) {
+            String type = string(config, "cache.", "type", "local");
+            if (!type.equals("local") && !type.equals("clustered")) {
+                throw new IllegalArgumentException("'cache.type' must be 'local' or 'clustered'");
+            }
+            long fxTtl = number(config, "cache.", "fxTtl", 0L);
+            long promoTtl = number(config, "cache.", "promoTtl", 0L);
+            long lockMargin = number(config, "cache.", "lockMargin", 1000L);
+            long nearCacheTtl = number(config, "cache.", "nearCacheTtl", 1000L);
+            if (fxTtl < 0 || promoTtl < 0 || lockMargin < 0 || nearCacheTtl < 0) {
+                throw new IllegalArgumentException("Cache TTLs and 'cache.lockMargin' cannot be negative");
+            }
+            int maxEntries = integer(config, "cache.", "maxEntries", 10000);
+            if (maxEntries < 1) {
+                throw new IllegalArgumentException("'cache.maxEntries' must be at least 1");
+            }
+            return new Cache(type, fxTtl, promoTtl, lockMargin, nearCacheTtl, maxEntries);
+        }
+
+        /** Takes effect on restart only; TTLs are applied live. */
+        public String getType() { return type; }
+
+        public long getFxTtl() { return fxTtl; }
+
+        public long getPromoTtl() { return promoTtl; }
+
+        /**
+         * How much longer than an upstream's own budget (timeout x retries) a node waits for another
+         * node's load of the same key; takes effect on restart only.
+         */
+        public long getLockMargin() { return lockMargin; }
+
+        public long getNearCacheTtl() { return nearCacheTtl; }
+
+        /** Size limit of the in-memory cache (or near cache); takes effect on restart only. */
+        public int getMaxEntries() { return maxEntries; }
+    }
+
+    public static final class Tracing {
+        private final int slowRequests;
+        private final long slowWindow;
+
+        private Tracing(int slowRequests, long slowWindow) {
+            this.slowRequests = slowRequests;
+            this.slowWindow = slowWindow;
+        }
+
+        static Tracing from(JsonObject config) {
+            int slowRequests = integer(config, "tracing.", "slowRequests", 20);
+            long slowWindow = number(config, "tracing.", "slowWindow", 300000L);
+            if (slowRequests < 0 || slowWindow <= 0) {
+                throw new IllegalArgumentException("'tracing.slowRequests' cannot be negative and "
+                        + "'tracing.slowWindow' must be greater than zero");
+            }
+            return new Tracing(slowRequests, slowWindow);
+        }
+
+        /** Takes effect on restart only. */
+        public int getSlowRequests() { return slowRequests; }
+
+        public long getSlowWindow() { return slowWindow; }
+    }
+
+    /** Event-loop monitoring settings; read at startup only. */
+    public static final class Monitoring {
+        private final long interval;
+        private final long blockedThreshold;
+
+        private Monitoring(long interval, long blockedThreshold) {
+            this.interval = interval;
+            this.blockedThreshold = blockedThreshold;
+        }
+
+        static Monitoring from(JsonObject config) {
+            long interval = number(config, "monitoring.", "interval", 100L);
+            long blockedThreshold = number(config, "monitoring.", "blockedThreshold", 500L);
+            if (interval <= 0 || blockedThreshold <= 0) {
+                throw new IllegalArgumentException("'monitoring.interval' and 'monitoring.blockedThreshold' must be "
+                        + "greater than zero");
+            }
+            return new Monitoring(interval, blockedThreshold);
+        }
+
+        public long getInterval() { return interval; }
+
+        public long getBlockedThreshold() { return blockedThreshold; }
+    }
+
+    /** Where the service accepts quotes; read at startup only. */
+    public static final class Endpoints {
+        private final int httpPort;
+        private final String eventBusAddress;
+        private final int grpcMaxBatchSize;
+
+        private Endpoints(int httpPort, String eventBusAddress, int grpcMaxBatchSize) {
+            this.httpPort = httpPort;
+            this.eventBusAddress = eventBusAddress;
+            this.grpcMaxBatchSize = grpcMaxBatchSize;
+        }
+
+        static Endpoints from(JsonObject config) {
+            int httpPort = integer(section(config, "", "http", new JsonObject()), "http.", "port", 8080);
+            if (httpPort < 0 || httpPort > 65535) {
+                throw new IllegalArgumentException("'http.port' must be between 0 and 65535");
+            }
+            String eventBusAddress = string(section(config, "", "eventbus", new JsonObject()), "eventbus.", "address",
+                    null);
+            int grpcMaxBatchSize = integer(section(config, "", "grpc", new JsonObject()), "grpc.", "maxBatchSize",
+                    100);
+            if (grpcMaxBatchSize < 1) {
+                throw new IllegalArgumentException("'grpc.maxBatchSize' must be at least 1");
+            }
+            return new Endpoints(httpPort, eventBusAddress, grpcMaxBatchSize);
+        }
+
+        public int getHttpPort() { return httpPort; }
+
+        /** The event-bus address for quotes, or {@code null} for the default one. */
+        public String getEventBusAddress() { return eventBusAddress; }
+
+        public int getGrpcMaxBatchSize() { return grpcMaxBatchSize; }
+    }
+
+    /**
+     * The admin API (metrics, slow requests, cache invalidation) listens apart from the quote
+     * port, by default on loopback only; read at startup only.
+     */
+    public static final class Admin {
+        private final String host;
+        private final int port;
+
+        private Admin(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        static Admin from(JsonObject config) {
+            String host = string(config, "admin.", "host", "127.0.0.1");
+            int port = integer(config, "admin.", "port", 9090);
+            if (port < 0 || port > 65535) {
+                throw new IllegalArgumentException("'admin.port' must be between 0 and 65535");
+            }
+            return new Admin(host, port);
+        }
+
+        public String getHost() { return host; }
+
+        public int getPort() { return port; }
+    }
+}
@@ -0,0 +1,61 @@
+package com.loyalty.eventbus;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.EventBus;
+import io.vertx.core.eventbus.MessageCodec;
+import io.vertx.core.json.JsonObject;
+
+/**
+ * Passes objects between co-located verticles by reference, with no serialisation. Only a
+ * message that actually leaves the JVM is encoded, as length-prefixed JSON. Sender and receiver
+ * share the instance, so neither may modify it once it has been sent.
+ */
+public class LocalObjectCodec<T> implements MessageCodec<T, T> {
+
+    private final Class<T> type;
+
+    public LocalObjectCodec(Class<T> type) {
+        this.type = type;
+    }
+
+    /**
+     * Registers the codec as the default for {@code type}. Safe to call from every verticle
+     * instance sharing the event bus.
+     */
+    public static <T> void registerDefault(EventBus eventBus, Class<T> type) {
+        try {
+            eventBus.registerDefaultCodec(type, new LocalObjectCodec<>(type));
+        } catch (IllegalStateException alreadyRegistered) {
+            // Another instance registered it first
+        }
+    }
+
+    @Override
+    public void encodeToWire(Buffer buffer, T value) {
+        Buffer json = JsonObject.mapFrom(value).toBuffer();
+        buffer.appendInt(json.length());
+        buffer.appendBuffer(json);
+    }
+
+    @Override
+    public T decodeFromWire(int pos, Buffer buffer) {
+        int length = buffer.getInt(pos);
+        int start = pos + 4;
+        return new JsonObject(buffer.getBuffer(start, start + length)).mapTo(type);
+    }
+
+    @Override
+    public T transform(T value) {
+        return value;
+    }
+
+    @Override
+    public String name() {
+        return "local-" + type.getName();
+    }
+
+    @Override
+    public byte systemCodecID() {
+        return -1;
+    }
+}
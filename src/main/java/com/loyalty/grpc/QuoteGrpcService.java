@@ -0,0 +1,227 @@
+package com.loyalty.grpc;
+
+import com.loyalty.QuoteException;
+import com.loyalty.QuoteService;
+import com.loyalty.grpc.proto.PointsQuoteServiceGrpc;
+import com.loyalty.grpc.proto.QuoteBatchRequest;
+import com.loyalty.grpc.proto.QuoteBatchResponse;
+import com.loyalty.grpc.proto.QuoteError;
+import com.loyalty.grpc.proto.QuoteResult;
+import com.loyalty.model.QuoteRequest;
+import com.loyalty.model.QuoteResponse;
+import com.loyalty.tracing.QuoteTrace;
+import io.vertx.core.Future;
+import io.vertx.grpc.common.GrpcMessageDecoder;
+import io.vertx.grpc.common.GrpcMessageEncoder;
+import io.vertx.grpc.common.GrpcStatus;
+import io.vertx.grpc.common.ServiceMethod;
+import io.vertx.grpc.common.ServiceName;
+import io.vertx.grpc.server.GrpcServer;
+import io.vertx.grpc.server.GrpcServerRequest;
+import io.vertx.grpc.server.GrpcServerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * gRPC binding of {@link QuoteService}: unary, batch and bidirectional streaming quotes over
+ * the protobuf messages in {@code quote.proto}.
+ */
+public class QuoteGrpcService {
+
+    private static final Logger logger = LoggerFactory.getLogger(QuoteGrpcService.class);
+
+    public static final ServiceName SERVICE_NAME = ServiceName.create(PointsQuoteServiceGrpc.SERVICE_NAME);
+
+    private static final ServiceMethod<com.loyalty.grpc.proto.QuoteRequest, com.loyalty.grpc.proto.QuoteResponse>
+            QUOTE = ServiceMethod.server(SERVICE_NAME, "Quote", GrpcMessageEncoder.encoder(),
+                    GrpcMessageDecoder.decoder(com.loyalty.grpc.proto.QuoteRequest.parser()));
+    private static final ServiceMethod<QuoteBatchRequest, QuoteBatchResponse> QUOTE_BATCH = ServiceMethod.server(
+            SERVICE_NAME, "QuoteBatch", GrpcMessageEncoder.encoder(),
+            GrpcMessageDecoder.decoder(QuoteBatchRequest.parser()));
+    private static final ServiceMethod<com.loyalty.grpc.proto.QuoteRequest, QuoteResult> QUOTE_STREAM =
+            ServiceMethod.server(SERVICE_NAME, "QuoteStream", GrpcMessageEncoder.encoder(),
+                    GrpcMessageDecoder.decoder(com.loyalty.grpc.proto.QuoteRequest.parser()));
+
+    private final QuoteService quoteService;
+    private final int maxBatchSize;
+
+    public QuoteGrpcService(QuoteService quoteService, int maxBatchSize) {
+        this.quoteService = quoteService;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public void bind(GrpcServer server) {
+        server.callHandler(QUOTE, this::handleQuote);
+        server.callHandler(QUOTE_BATCH, this::handleQuoteBatch);
+        server.callHandler(QUOTE_STREAM, this::handleQuoteStream);
+    }
+
+    private void handleQuote(GrpcServerRequest<com.loyalty.grpc.proto.QuoteRequest,
+            com.loyalty.grpc.proto.QuoteResponse> call) {
+        StreamState state = new StreamState();
+        call.handler(message -> {
+            state.received = true;
+            quoteService.quote(fromProto(message), trace(call))
+                    .onSuccess(response -> call.response().end(toProto(response)))
+                    .onFailure(err -> {
+                        QuoteException failure = QuoteException.from(err);
+                        call.response()
+                                .status(status(failure))
+                                .statusMessage(failure.getMessage())
+                                .end();
+                    });
+        });
+        call.endHandler(v -> failIfEmpty(call, state));
+    }
+
+    /**
+     * The gRPC status for a failed quote: {@code UNAVAILABLE} when the FX or promo service failed,
+     * so clients may retry, and {@code INTERNAL} for anything else that is not the caller's fault.
+     */
+    private static GrpcStatus status(QuoteException failure) {
+        if (failure.getStatusCode() == 400) {
+            return GrpcStatus.INVALID_ARGUMENT;
+        }
+        return failure.isUpstreamFailure() ? GrpcStatus.UNAVAILABLE : GrpcStatus.INTERNAL;
+    }
+
+    private void handleQuoteBatch(GrpcServerRequest<QuoteBatchRequest, QuoteBatchResponse> call) {
+        StreamState state = new StreamState();
+        call.handler(batch -> {
+            state.received = true;
+            if (batch.getRequestsCount() > maxBatchSize) {
+                call.response()
+                        .status(GrpcStatus.INVALID_ARGUMENT)
+                        .statusMessage("Batch size " + batch.getRequestsCount() + " exceeds the limit of "
+                                + maxBatchSize)
+                        .end();
+                return;
+            }
+            List<Future<QuoteResult>> results = new ArrayList<>(batch.getRequestsCount());
+            for (com.loyalty.grpc.proto.QuoteRequest message : batch.getRequestsList()) {
+                results.add(quote(message, trace(call)));
+            }
+            Future.all(results).onComplete(done -> {
+                QuoteBatchResponse.Builder response = QuoteBatchResponse.newBuilder();
+                results.forEach(result -> response.addResults(result.result()));
+                call.response().end(response.build());
+            });
+        });
+        call.endHandler(v -> failIfEmpty(call, state));
+    }
+
+    /**
+     * Ends a unary call whose client half-closed without sending a request; it would otherwise
+     * never get a status.
+     */
+    private static void failIfEmpty(GrpcServerRequest<?, ?> call, StreamState state) {
+        if (!state.received) {
+            call.response()
+                    .status(GrpcStatus.INVALID_ARGUMENT)
+                    .statusMessage("Request message is missing")
+                    .end();
+        }
+    }
+
+    /**
+     * Quotes each streamed request as it arrives, with at most {@code maxBatchSize} in flight like a
+     * batch: the call is paused at the limit, or while the response cannot take more results.
+     */
+    private void handleQuoteStream(GrpcServerRequest<com.loyalty.grpc.proto.QuoteRequest, QuoteResult> call) {
+        GrpcServerResponse<com.loyalty.grpc.proto.QuoteRequest, QuoteResult> response = call.response();
+        StreamState state = new StreamState();
+        response.drainHandler(v -> updateFlow(call, state));
+        call.handler(message -> {
+            state.inFlight++;
+            updateFlow(call, state);
+            quote(message, trace(call)).onSuccess(result -> {
+                state.inFlight--;
+                if (state.reset) {
+                    return;
+                }
+                response.write(result);
+                if (state.ended && state.inFlight == 0) {
+                    response.end();
+                } else {
+                    updateFlow(call, state);
+                }
+            });
+        });
+        call.endHandler(v -> {
+            state.ended = true;
+            if (state.inFlight == 0 && !state.reset) {
+                response.end();
+            }
+        });
+        call.exceptionHandler(err -> {
+            // The client reset or cancelled the call; quotes still running have nowhere to go
+            state.reset = true;
+            logger.warn("Quote stream failed: {}", err.getMessage());
+        });
+    }
+
+    private void updateFlow(GrpcServerRequest<?, ?> call, StreamState state) {
+        if (state.ended || state.reset) {
+            return;
+        }
+        if (state.inFlight >= maxBatchSize || call.response().writeQueueFull()) {
+            call.pause();
+        } else {
+            call.resume();
+        }
+    }
+
+    /**
+     * Quotes a single message, folding any failure into the result so one bad request does
+     * not fail a whole batch or stream.
+     */
+    private Future<QuoteResult> quote(com.loyalty.grpc.proto.QuoteRequest message, QuoteTrace trace) {
+        QuoteResult.Builder result = QuoteResult.newBuilder().setCorrelationId(message.getCorrelationId());
+        return quoteService.quote(fromProto(message), trace)
+                .map(response -> result.setQuote(toProto(response)).build())
+                .otherwise(err -> {
+                    QuoteException failure = QuoteException.from(err);
+                    return result.setError(QuoteError.newBuilder()
+                            .setCode(failure.getStatusCode())
+                            .setMessage(failure.getMessage())).build();
+                });
+    }
+
+    /**
+     * Each quote in a call gets its own trace, continuing the caller's trace context if present.
+     */
+    private static QuoteTrace trace(GrpcServerRequest<?, ?> call) {
+        return QuoteTrace.fromTraceparent(call.headers().get(QuoteTrace.TRACEPARENT));
+    }
+
+    static QuoteRequest fromProto(com.loyalty.grpc.proto.QuoteRequest message) {
+        QuoteRequest request = new QuoteRequest();
+        request.setFareAmount(message.getFareAmount());
+        request.setCurrency(message.getCurrency().isEmpty() ? null : message.getCurrency());
+        request.setCabinClass(message.hasCabinClass() ? message.getCabinClass() : null);
+        request.setCustomerTier(message.hasCustomerTier() ? message.getCustomerTier() : null);
+        request.setPromoCode(message.hasPromoCode() ? message.getPromoCode() : null);
+        return request;
+    }
+
+    static com.loyalty.grpc.proto.QuoteResponse toProto(QuoteResponse response) {
+        return com.loyalty.grpc.proto.QuoteResponse.newBuilder()
+                .setBasePoints(response.getBasePoints())
+                .setTierBonus(response.getTierBonus())
+                .setPromoBonus(response.getPromoBonus())
+                .setTotalPoints(response.getTotalPoints())
+                .setEffectiveFxRate(response.getEffectiveFxRate())
+                .addAllWarnings(response.getWarnings())
+                .build();
+    }
+
+    private static final class StreamState {
+        private boolean received;
+        private int inFlight;
+        private boolean ended;
+        private boolean reset;
+    }
+}
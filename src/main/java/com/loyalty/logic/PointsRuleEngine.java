@@ -0,0 +1,39 @@
+package com.loyalty.logic;
+
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the active {@link PointsRuleSet}. Reloads compile off to the side and swap the
+ * reference atomically, so quotes in flight keep the rule set they started with.
+ */
+public class PointsRuleEngine {
+
+    private final AtomicReference<PointsRuleSet> current;
+    private final AtomicReference<JsonObject> source = new AtomicReference<>();
+
+    public PointsRuleEngine() {
+        this.current = new AtomicReference<>(PointsRuleSet.defaults());
+    }
+
+    public PointsRuleSet current() {
+        return current.get();
+    }
+
+    /**
+     * Compiles and activates {@code rules}. Returns {@code false} if the rules are identical to
+     * the active ones; throws {@link IllegalArgumentException} and keeps the previous rule set
+     * if they do not compile.
+     */
+    public boolean reload(JsonObject rules) {
+        JsonObject normalized = rules == null ? new JsonObject() : rules.copy();
+        if (normalized.equals(source.get())) {
+            return false;
+        }
+        PointsRuleSet compiled = PointsRuleSet.compile(normalized);
+        current.set(compiled);
+        source.set(normalized);
+        return true;
+    }
+}
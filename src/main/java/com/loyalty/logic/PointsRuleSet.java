@@ -0,0 +1,252 @@
+package com.loyalty.logic;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable, compiled set of earn rules. The tier x cabin x currency rules are flattened
+ * into two arrays at compile time so a quote is evaluated with plain index lookups.
+ * Cabins and currencies without an explicit rule fall back to the wildcard slot 0.
+ */
+public final class PointsRuleSet {
+
+    public enum PromoStacking {
+        /** Promo bonus is added on top of the tier bonus. */
+        STACK,
+        /** Only the larger of tier bonus and promo bonus is granted. */
+        BEST_OF
+    }
+
+    private static final String ANY = "*";
+
+    private static final JsonObject DEFAULT_TIERS = new JsonObject()
+            .put("NONE", 0.0)
+            .put("SILVER", 0.15)
+            .put("GOLD", 0.30)
+            .put("PLATINUM", 0.50);
+
+    private static final int DEFAULT_MAX_POINTS = 50000;
+
+    private final Map<String, Integer> tiers;
+    private final Map<String, Integer> cabins;
+    private final Map<String, Integer> currencies;
+    private final int cabinCount;
+    private final int currencyCount;
+    private final double[] earnMultipliers;
+    private final double[] tierBonusRates;
+    private final int maxPoints;
+    private final int maxPromoBonus;
+    private final PromoStacking promoStacking;
+
+    private PointsRuleSet(Map<String, Integer> tiers, Map<String, Integer> cabins, Map<String, Integer> currencies,
+                          double[] earnMultipliers, double[] tierBonusRates, int maxPoints, int maxPromoBonus,
+                          PromoStacking promoStacking) {
+        this.tiers = Map.copyOf(tiers);
+        this.cabins = Map.copyOf(cabins);
+        this.currencies = Map.copyOf(currencies);
+        this.cabinCount = cabins.size() + 1;
+        this.currencyCount = currencies.size() + 1;
+        this.earnMultipliers = earnMultipliers;
+        this.tierBonusRates = tierBonusRates;
+        this.maxPoints = maxPoints;
+        this.maxPromoBonus = maxPromoBonus;
+        this.promoStacking = promoStacking;
+    }
+
+    public static PointsRuleSet defaults() {
+        return compile(new JsonObject());
+    }
+
+    /**
+     * Compiles the {@code rules} configuration section. Throws {@link IllegalArgumentException}
+     * if the section is inconsistent or a value has the wrong type, so a bad reload never replaces
+     * a working rule set.
+     */
+    public static PointsRuleSet compile(JsonObject rules) {
+        if (rules == null) {
+            rules = new JsonObject();
+        }
+        JsonObject tierRules = value(rules, "tiers", JsonObject.class, DEFAULT_TIERS);
+        JsonObject cabinRules = value(rules, "cabins", JsonObject.class, new JsonObject());
+        JsonObject currencyRules = value(rules, "currencies", JsonObject.class, new JsonObject());
+        JsonArray overrides = value(rules, "overrides", JsonArray.class, new JsonArray());
+        JsonObject promoRules = value(rules, "promo", JsonObject.class, new JsonObject());
+
+        if (tierRules.isEmpty()) {
+            throw new IllegalArgumentException("At least one customer tier must be defined");
+        }
+
+        Map<String, Integer> tiers = index(tierRules, 0);
+        Map<String, Integer> cabins = index(cabinRules, 1);
+        Map<String, Integer> currencies = index(currencyRules, 1);
+        int cabinCount = cabins.size() + 1;
+        int currencyCount = currencies.size() + 1;
+
+        double[] cabinMultipliers = multipliers(cabinRules, cabins, cabinCount);
+        double[] currencyMultipliers = multipliers(currencyRules, currencies, currencyCount);
+
+        int size = tiers.size() * cabinCount * currencyCount;
+        double[] earn = new double[size];
+        double[] bonus = new double[size];
+        for (String name : tierRules.fieldNames()) {
+            int t = tiers.get(name.toUpperCase(Locale.ROOT));
+            double tierBonus = rate(tierRules, name, "tiers");
+            for (int c = 0; c < cabinCount; c++) {
+                for (int k = 0; k < currencyCount; k++) {
+                    int slot = (t * cabinCount + c) * currencyCount + k;
+                    earn[slot] = cabinMultipliers[c] * currencyMultipliers[k];
+                    bonus[slot] = tierBonus;
+                }
+            }
+        }
+
+        for (int i = 0; i < overrides.size(); i++) {
+            if (!(overrides.getValue(i) instanceof JsonObject override)) {
+                throw new IllegalArgumentException("Invalid value for overrides[" + i + "]: " + overrides.getValue(i));
+            }
+            applyOverride(override, tiers, cabins, currencies, earn, bonus, cabinCount, currencyCount);
+        }
+
+        int maxPoints = value(rules, "maxPoints", Number.class, DEFAULT_MAX_POINTS).intValue();
+        if (maxPoints <= 0) {
+            throw new IllegalArgumentException("maxPoints must be greater than zero");
+        }
+        int maxPromoBonus = value(promoRules, "maxBonus", Number.class, 0).intValue();
+        if (maxPromoBonus < 0) {
+            throw new IllegalArgumentException("promo.maxBonus cannot be negative");
+        }
+        PromoStacking stacking;
+        try {
+            stacking = PromoStacking.valueOf(value(promoRules, "stacking", String.class, "STACK")
+                    .toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown promo stacking mode: " + promoRules.getString("stacking"));
+        }
+
+        return new PointsRuleSet(tiers, cabins, currencies, earn, bonus, maxPoints, maxPromoBonus, stacking);
+    }
+
+    /**
+     * Reads {@code key} as a {@code type}, or {@code defaultValue} if it is absent. YAML and JSON
+     * give no type guarantees, so a value of another type is a configuration error, not a bug.
+     */
+    private static <T> T value(JsonObject rules, String key, Class<T> type, T defaultValue) {
+        Object value = rules.getValue(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (!type.isInstance(value)) {
+            throw new IllegalArgumentException("Invalid value for " + key + ": " + value);
+        }
+        return type.cast(value);
+    }
+
+    private static Map<String, Integer> index(JsonObject rules, int firstIndex) {
+        Map<String, Integer> index = new HashMap<>();
+        for (String name : rules.fieldNames()) {
+            String key = name.toUpperCase(Locale.ROOT);
+            if (index.putIfAbsent(key, firstIndex + index.size()) != null) {
+                throw new IllegalArgumentException("Duplicate rule key: " + key);
+            }
+        }
+        return index;
+    }
+
+    private static double[] multipliers(JsonObject rules, Map<String, Integer> index, int count) {
+        double[] values = new double[count];
+        values[0] = 1.0;
+        for (String name : rules.fieldNames()) {
+            values[index.get(name.toUpperCase(Locale.ROOT))] = rate(rules, name, "multipliers");
+        }
+        return values;
+    }
+
+    private static double rate(JsonObject rules, String name, String section) {
+        Object value = rules.getValue(name);
+        if (!(value instanceof Number number) || number.doubleValue() < 0) {
+            throw new IllegalArgumentException("Invalid rate for " + name + " in " + section + ": " + value);
+        }
+        return number.doubleValue();
+    }
+
+    private static void applyOverride(JsonObject override, Map<String, Integer> tiers, Map<String, Integer> cabins,
+                                      Map<String, Integer> currencies, double[] earn, double[] bonus,
+                                      int cabinCount, int currencyCount) {
+        int[] tierSlots = slots(value(override, "tier", String.class, ANY), tiers, "tier", tiers.size());
+        int[] cabinSlots = slots(value(override, "cabin", String.class, ANY), cabins, "cabin", cabinCount);
+        int[] currencySlots = slots(value(override, "currency", String.class, ANY), currencies, "currency",
+                currencyCount);
+        Number earnMultiplier = value(override, "earnMultiplier", Number.class, null);
+        Number tierBonus = value(override, "tierBonus", Number.class, null);
+        if ((earnMultiplier != null && earnMultiplier.doubleValue() < 0)
+                || (tierBonus != null && tierBonus.doubleValue() < 0)) {
+            throw new IllegalArgumentException("Override rates cannot be negative: " + override.encode());
+        }
+
+        for (int t : tierSlots) {
+            for (int c : cabinSlots) {
+                for (int k : currencySlots) {
+                    int slot = (t * cabinCount + c) * currencyCount + k;
+                    if (earnMultiplier != null) {
+                        earn[slot] = earnMultiplier.doubleValue();
+                    }
+                    if (tierBonus != null) {
+                        bonus[slot] = tierBonus.doubleValue();
+                    }
+                }
+            }
+        }
+    }
+
+    private static int[] slots(String key, Map<String, Integer> index, String dimension, int count) {
+        if (ANY.equals(key)) {
+            int[] all = new int[count];
+            Arrays.setAll(all, i -> i);
+            return all;
+        }
+        Integer slot = index.get(key.toUpperCase(Locale.ROOT));
+        if (slot == null) {
+            throw new IllegalArgumentException("Override references unknown " + dimension + ": " + key);
+        }
+        return new int[] { slot };
+    }
+
+    public boolean hasTier(String tier) {
+        return tier != null && tiers.containsKey(tier);
+    }
+
+    /**
+     * Resolves the flat slot for a tier, cabin and currency. Returns -1 for an unknown tier.
+     * Unknown or missing cabins and currencies resolve to the wildcard rule.
+     */
+    public int slot(String tier, String cabin, String currency) {
+        Integer t = tier == null ? null : tiers.get(tier);
+        if (t == null) {
+            return -1;
+        }
+        Integer c = cabin == null ? null : cabins.get(cabin.toUpperCase(Locale.ROOT));
+        Integer k = currency == null ? null : currencies.get(currency.toUpperCase(Locale.ROOT));
+        return (t * cabinCount + (c == null ? 0 : c)) * currencyCount + (k == null ? 0 : k);
+    }
+
+    public double earnMultiplier(int slot) { return earnMultipliers[slot]; }
+
+    public double tierBonusRate(int slot) { return tierBonusRates[slot]; }
+
+    public int getMaxPoints() { return maxPoints; }
+
+    public int getMaxPromoBonus() { return maxPromoBonus; }
+
+    public PromoStacking getPromoStacking() { return promoStacking; }
+
+    @Override
+    public String toString() {
+        return "PointsRuleSet{tiers=" + tiers.keySet() + ", cabins=" + cabins.keySet() + ", currencies="
+                + currencies.keySet() + ", maxPoints=" + maxPoints + ", promoStacking=" + promoStacking + "}";
+    }
+}
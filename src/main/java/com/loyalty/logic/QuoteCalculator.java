@@ -4,30 +4,45 @@ import com.loyalty.model.QuoteRequest;
 import com.loyalty.model.QuoteResponse;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 public class QuoteCalculator {
 
-    private static final Map<String, Double> TIER_MULTIPLIERS = Map.of(
-        "NONE", 0.0,
-        "SILVER", 0.15,
-        "GOLD", 0.30,
-        "PLATINUM", 0.50
-    );
+    public QuoteResponse calculate(PointsRuleSet rules, QuoteRequest request, double fxRate, int promoBonus,
+                                   List<String> externalWarnings) {
+        return calculate(rules, request, request.getCustomerTier(), fxRate, promoBonus, externalWarnings);
+    }
 
-    private static final int MAX_POINTS = 50000;
+    /**
+     * Calculates with {@code customerTier} in place of the request's own tier, so callers can pass
+     * a normalised tier without modifying a request they do not own.
+     */
+    public QuoteResponse calculate(PointsRuleSet rules, QuoteRequest request, String customerTier, double fxRate,
+                                   int promoBonus, List<String> externalWarnings) {
+        int slot = rules.slot(customerTier, request.getCabinClass(), request.getCurrency());
+        if (slot < 0) {
+            throw new IllegalArgumentException("Unknown customer tier: " + customerTier);
+        }
 
-    public QuoteResponse calculate(QuoteRequest request, double fxRate, int promoBonus, List<String> externalWarnings) {
         double fareInTargetCurrency = request.getFareAmount() * fxRate;
-        int basePoints = (int) Math.floor(fareInTargetCurrency);
-        
-        double multiplier = TIER_MULTIPLIERS.getOrDefault(request.getCustomerTier(), 0.0);
-        int tierBonus = (int) Math.floor(basePoints * multiplier);
-        
+        int basePoints = (int) Math.floor(fareInTargetCurrency * rules.earnMultiplier(slot));
+
+        int tierBonus = (int) Math.floor(basePoints * rules.tierBonusRate(slot));
+
+        if (rules.getMaxPromoBonus() > 0 && promoBonus > rules.getMaxPromoBonus()) {
+            promoBonus = rules.getMaxPromoBonus();
+        }
+        if (rules.getPromoStacking() == PointsRuleSet.PromoStacking.BEST_OF) {
+            if (promoBonus > tierBonus) {
+                tierBonus = 0;
+            } else {
+                promoBonus = 0;
+            }
+        }
+
         int totalPoints = basePoints + tierBonus + promoBonus;
-        
-        if (totalPoints > MAX_POINTS) {
-            totalPoints = MAX_POINTS;
+
+        if (totalPoints > rules.getMaxPoints()) {
+            totalPoints = rules.getMaxPoints();
         }
 
         QuoteResponse response = new QuoteResponse();
@@ -36,13 +51,13 @@ public class QuoteCalculator {
         response.setPromoBonus(promoBonus);
         response.setTotalPoints(totalPoints);
         response.setEffectiveFxRate(fxRate);
-        
+
         List<String> warnings = new ArrayList<>(externalWarnings);
-        if (totalPoints == MAX_POINTS) {
+        if (totalPoints == rules.getMaxPoints()) {
             warnings.add("POINTS_CAPPED_AT_MAX");
         }
         response.setWarnings(warnings);
-        
+
         return response;
     }
 }
@@ -0,0 +1,186 @@
+package com.loyalty.metrics;
+
+import io.netty.util.concurrent.EventExecutor;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
+import io.vertx.core.Context;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.core.json.JsonArray;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how responsive one verticle's event loop is. A heartbeat timer on the event loop
+ * records how late it fires (event-loop delay), and a watchdog thread outside Vert.x captures
+ * the event loop's stack when the heartbeat is overdue by more than the blocked threshold.
+ * Results are published as gauges under {@code eventloop.<thread>.<deploymentId>.<instance>.*}:
+ * named after the event loop and the deployment so they stay stable across redeploys of other
+ * verticles, and numbered per monitor because instances of one deployment may share an event loop.
+ *
+ * <p>Blocking work from every verticle runs on the one worker pool Vert.x shares across the
+ * instance, so it is published once as {@code workerPool.shared.*} and left in place when a
+ * monitor stops.
+ */
+public class EventLoopMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(EventLoopMonitor.class);
+    private static final int STACK_DEPTH = 20;
+    private static final long MAX_LAG_WINDOW_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final Vertx vertx;
+    private final Context context;
+    private final ServiceMetrics metrics;
+    private final long intervalMillis;
+    private final long blockedThresholdNanos;
+    private final EventExecutor eventLoop;
+    private final int instance = INSTANCES.incrementAndGet();
+    private String name;
+
+    private volatile Thread eventLoopThread;
+    private volatile long expectedTickNanos;
+    private volatile double lagMillis;
+    private volatile double maxLagMillis;
+    private volatile double previousMaxLagMillis;
+    private long maxLagWindowStart;
+    private volatile boolean stallReported;
+    private volatile long blockedCount;
+    private volatile JsonArray lastBlockedStack = new JsonArray();
+
+    private long timerId = -1;
+    private ScheduledFuture<?> watchdogTask;
+
+    public EventLoopMonitor(Vertx vertx, Context context, ServiceMetrics metrics, long intervalMillis,
+                            long blockedThresholdMillis) {
+        this.vertx = vertx;
+        this.context = context;
+        this.metrics = metrics;
+        this.intervalMillis = intervalMillis;
+        this.blockedThresholdNanos = TimeUnit.MILLISECONDS.toNanos(blockedThresholdMillis);
+        this.eventLoop = VertxInternals.eventLoop(context);
+    }
+
+    /**
+     * Starts the heartbeat. Must be called on the monitored verticle's event loop.
+     */
+    public void start() {
+        eventLoopThread = Thread.currentThread();
+        name = eventLoopThread.getName() + "." + context.deploymentID() + "." + instance;
+        maxLagWindowStart = System.nanoTime();
+        scheduleTick();
+        watchdogTask = Watchdog.EXECUTOR.scheduleAtFixedRate(this::checkBlocked, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+
+        String prefix = "eventloop." + name + ".";
+        metrics.gauge(prefix + "thread", () -> eventLoopThread.getName());
+        metrics.gauge(prefix + "lagMs", () -> lagMillis);
+        metrics.gauge(prefix + "maxLagMs1m", () -> Math.max(maxLagMillis, previousMaxLagMillis));
+        metrics.gauge(prefix + "pendingTasks", this::pendingTasks);
+        metrics.gauge(prefix + "blockedCount", () -> blockedCount);
+        metrics.gauge(prefix + "lastBlockedStack", () -> lastBlockedStack);
+
+        publishWorkerPool(VertxInternals.workerPool(context), metrics);
+    }
+
+    // Registering again replaces the gauges with identical ones, so every monitor may call this
+    private static void publishWorkerPool(ExecutorService workers, ServiceMetrics metrics) {
+        if (workers instanceof ThreadPoolExecutor pool) {
+            metrics.gauge("workerPool.shared.active", pool::getActiveCount);
+            metrics.gauge("workerPool.shared.queued", () -> pool.getQueue().size());
+            metrics.gauge("workerPool.shared.size", pool::getMaximumPoolSize);
+            metrics.gauge("workerPool.shared.utilisation",
+                    () -> (double) pool.getActiveCount() / pool.getMaximumPoolSize());
+        }
+    }
+
+    public void stop() {
+        if (timerId >= 0) {
+            vertx.cancelTimer(timerId);
+        }
+        if (watchdogTask != null) {
+            watchdogTask.cancel(false);
+        }
+        if (name != null) {
+            metrics.removeGauges("eventloop." + name + ".");
+        }
+    }
+
+    // A one-shot timer per tick, so a late tick shows up as lag instead of being caught up
+    private void scheduleTick() {
+        expectedTickNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(intervalMillis);
+        timerId = vertx.setTimer(intervalMillis, id -> tick());
+    }
+
+    private void tick() {
+        long now = System.nanoTime();
+        double lag = Math.max(0, now - expectedTickNanos) / 1_000_000.0;
+        lagMillis = lag;
+        if (now - maxLagWindowStart > MAX_LAG_WINDOW_NANOS) {
+            previousMaxLagMillis = maxLagMillis;
+            maxLagMillis = 0;
+            maxLagWindowStart = now;
+        }
+        if (lag > maxLagMillis) {
+            maxLagMillis = lag;
+        }
+        stallReported = false;
+        scheduleTick();
+    }
+
+    private void checkBlocked() {
+        long overdue = System.nanoTime() - expectedTickNanos;
+        if (overdue < blockedThresholdNanos || stallReported) {
+            return;
+        }
+        stallReported = true;
+        blockedCount++;
+        metrics.increment("eventloop.blocked");
+
+        StackTraceElement[] stack = eventLoopThread.getStackTrace();
+        JsonArray frames = new JsonArray();
+        StringBuilder trace = new StringBuilder();
+        for (int i = 0; i < Math.min(stack.length, STACK_DEPTH); i++) {
+            frames.add(stack[i].toString());
+            trace.append("\n\tat ").append(stack[i]);
+        }
+        lastBlockedStack = frames;
+        logger.warn("Event loop {} of {} blocked for {}ms, pending tasks={}{}", eventLoopThread.getName(), name,
+                TimeUnit.NANOSECONDS.toMillis(overdue), pendingTasks(), trace);
+    }
+
+    private int pendingTasks() {
+        return eventLoop instanceof SingleThreadEventExecutor executor ? executor.pendingTasks() : -1;
+    }
+
+    /**
+     * The only use of Vert.x internals in the service: neither the Netty event loop behind a context
+     * nor the shared worker pool is reachable through the public API. Revisit on Vert.x upgrades.
+     */
+    private static final class VertxInternals {
+
+        static EventExecutor eventLoop(Context context) {
+            return ((ContextInternal) context).nettyEventLoop();
+        }
+
+        static ExecutorService workerPool(Context context) {
+            return ((ContextInternal) context).workerPool().executor();
+        }
+    }
+
+    /** One daemon thread watches all monitored event loops. */
+    private static final class Watchdog {
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "quote-eventloop-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
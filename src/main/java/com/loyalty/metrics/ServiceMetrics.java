@@ -0,0 +1,64 @@
+package com.loyalty.metrics;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide counters and gauges shared by all verticle instances of a {@link Vertx} instance,
+ * exposed as JSON on the admin metrics endpoint.
+ */
+public final class ServiceMetrics implements Shareable {
+
+    private static final String SHARED_MAP = "loyalty.metrics";
+    private static final String KEY = "registry";
+
+    private final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Object>> gauges = new ConcurrentHashMap<>();
+
+    public static ServiceMetrics get(Vertx vertx) {
+        return (ServiceMetrics) vertx.sharedData()
+                .<String, ServiceMetrics>getLocalMap(SHARED_MAP)
+                .computeIfAbsent(KEY, k -> new ServiceMetrics());
+    }
+
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * Registers a value that is sampled every time the metrics are read.
+     */
+    public void gauge(String name, Supplier<Object> value) {
+        gauges.put(name, value);
+    }
+
+    public void removeGauges(String prefix) {
+        gauges.keySet().removeIf(name -> name.startsWith(prefix));
+    }
+
+    public long count(String name) {
+        LongAdder counter = counters.get(name);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        Map<String, LongAdder> sorted = new TreeMap<>(counters);
+        JsonObject counterJson = new JsonObject();
+        sorted.forEach((name, counter) -> counterJson.put(name, counter.sum()));
+        JsonObject gaugeJson = new JsonObject();
+        new TreeMap<>(gauges).forEach((name, gauge) -> gaugeJson.put(name, gauge.get()));
+        return json.put("counters", counterJson).put("gauges", gaugeJson);
+    }
+}
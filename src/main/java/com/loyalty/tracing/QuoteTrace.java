@@ -0,0 +1,157 @@
+package com.loyalty.tracing;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Timing breakdown of one quote: a flat list of named stages measured from the start of the
+ * request. Trace ids follow the W3C trace-context format so they can be continued by the caller
+ * and propagated to the FX and promo services through {@link #TRACEPARENT}.
+ */
+public final class QuoteTrace {
+
+    public static final String TRACEPARENT = "traceparent";
+
+    // version-traceId-parentId-flags, all lowercase hex; version ff is reserved as invalid
+    private static final Pattern TRACEPARENT_FORMAT =
+            Pattern.compile("(?!ff)[0-9a-f]{2}-([0-9a-f]{32})-([0-9a-f]{16})-[0-9a-f]{2}");
+    private static final Pattern ALL_ZEROS = Pattern.compile("0+");
+
+    private final String traceId;
+    private final String parentSpanId;
+    private final long startedAt = System.currentTimeMillis();
+    private final long startNanos = System.nanoTime();
+    private final List<Span> spans = new ArrayList<>();
+    private long durationNanos = -1;
+    private String outcome;
+    private String summary;
+
+    private QuoteTrace(String traceId, String parentSpanId) {
+        this.traceId = traceId;
+        this.parentSpanId = parentSpanId;
+    }
+
+    /**
+     * Continues the trace in an incoming {@code traceparent} header, or starts a new one if the
+     * header is missing or malformed, including all-zero trace or parent ids, which the W3C
+     * format reserves as invalid.
+     */
+    public static QuoteTrace fromTraceparent(String traceparent) {
+        if (traceparent != null) {
+            Matcher parts = TRACEPARENT_FORMAT.matcher(traceparent.trim());
+            if (parts.matches() && !ALL_ZEROS.matcher(parts.group(1)).matches()
+                    && !ALL_ZEROS.matcher(parts.group(2)).matches()) {
+                return new QuoteTrace(parts.group(1), parts.group(2));
+            }
+        }
+        return new QuoteTrace(randomHex(16), null);
+    }
+
+    public static QuoteTrace start() {
+        return fromTraceparent(null);
+    }
+
+    public String getTraceId() { return traceId; }
+
+    public synchronized Span span(String name) {
+        Span span = new Span(name, randomHex(8), System.nanoTime() - startNanos);
+        spans.add(span);
+        return span;
+    }
+
+    /**
+     * The {@code traceparent} header value for an outgoing call made within {@code span}.
+     */
+    public String traceparent(Span span) {
+        return "00-" + traceId + "-" + span.spanId + "-01";
+    }
+
+    /**
+     * Marks the request complete. {@code summary} is a short description of the request, such
+     * as its currency and tier, kept for the slow request log.
+     */
+    public synchronized void finish(String outcome, String summary) {
+        if (durationNanos < 0) {
+            this.durationNanos = System.nanoTime() - startNanos;
+            this.outcome = outcome;
+            this.summary = summary;
+        }
+    }
+
+    public synchronized long getDurationNanos() { return durationNanos; }
+
+    public long elapsedMillis() {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    public long getStartedAt() { return startedAt; }
+
+    public synchronized JsonObject toJson() {
+        JsonArray stages = new JsonArray();
+        for (Span span : spans) {
+            stages.add(span.toJson());
+        }
+        return new JsonObject()
+                .put("traceId", traceId)
+                .put("parentSpanId", parentSpanId)
+                .put("startedAt", startedAt)
+                .put("durationMs", millis(durationNanos))
+                .put("outcome", outcome)
+                .put("request", summary)
+                .put("stages", stages);
+    }
+
+    private static double millis(long nanos) {
+        return nanos < 0 ? -1 : nanos / 1_000_000.0;
+    }
+
+    private static String randomHex(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder hex = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes * 2; i++) {
+            hex.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return hex.toString();
+    }
+
+    public final class Span {
+        private final String name;
+        private final String spanId;
+        private final long startOffsetNanos;
+        private long durationNanos = -1;
+        private String outcome;
+
+        private Span(String name, String spanId, long startOffsetNanos) {
+            this.name = name;
+            this.spanId = spanId;
+            this.startOffsetNanos = startOffsetNanos;
+        }
+
+        public void end() {
+            end("ok");
+        }
+
+        public void end(String outcome) {
+            synchronized (QuoteTrace.this) {
+                if (durationNanos < 0) {
+                    this.durationNanos = System.nanoTime() - startNanos - startOffsetNanos;
+                    this.outcome = outcome;
+                }
+            }
+        }
+
+        private JsonObject toJson() {
+            return new JsonObject()
+                    .put("name", name)
+                    .put("startMs", millis(startOffsetNanos))
+                    .put("durationMs", millis(durationNanos))
+                    .put("outcome", outcome);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.loyalty.tracing;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.shareddata.Shareable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Keeps the N slowest quotes seen within a recent window, with their full stage breakdown.
+ * Entries live in a fixed array: a new trace replaces an expired slot or, once the array is
+ * full, the fastest entry if it is slower than that one. Shared by all verticle instances of a
+ * {@link Vertx}.
+ *
+ * <p>Every quote is offered to the log, so the common case of a trace too fast to keep is
+ * rejected against a volatile admission floor without taking the lock. The floor may be read
+ * slightly stale, which at worst drops a trace that only just qualified.
+ */
+public final class SlowRequestLog implements Shareable {
+
+    private static final String SHARED_MAP = "loyalty.tracing";
+    private static final String KEY = "slow-requests";
+
+    private final QuoteTrace[] slowest;
+    private volatile long windowMillis;
+    // Fastest retained duration once every slot is taken, -1 while a slot is free
+    private volatile long admissionFloorNanos = -1;
+    // Start of the oldest retained trace; once it leaves the window its slot is up for grabs
+    private volatile long oldestStartedAt;
+
+    SlowRequestLog(int capacity, long windowMillis) {
+        this.slowest = new QuoteTrace[capacity];
+        this.windowMillis = windowMillis;
+    }
+
+    /**
+     * Returns the log shared by this {@link Vertx}. The capacity is fixed by the first caller;
+     * the window can be changed later with {@link #setWindowMillis(long)}.
+     */
+    public static SlowRequestLog get(Vertx vertx, int capacity, long windowMillis) {
+        return (SlowRequestLog) vertx.sharedData()
+                .<String, SlowRequestLog>getLocalMap(SHARED_MAP)
+                .computeIfAbsent(KEY, k -> new SlowRequestLog(capacity, windowMillis));
+    }
+
+    public void setWindowMillis(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    public void record(QuoteTrace trace) {
+        if (slowest.length == 0) {
+            return;
+        }
+        long expiredBefore = System.currentTimeMillis() - windowMillis;
+        if (trace.getDurationNanos() <= admissionFloorNanos && oldestStartedAt >= expiredBefore) {
+            return;
+        }
+        admit(trace, expiredBefore);
+    }
+
+    private synchronized void admit(QuoteTrace trace, long expiredBefore) {
+        int candidate = -1;
+        for (int i = 0; i < slowest.length; i++) {
+            QuoteTrace entry = slowest[i];
+            if (entry == null || entry.getStartedAt() < expiredBefore) {
+                candidate = i;
+                break;
+            }
+            if (candidate < 0 || entry.getDurationNanos() < slowest[candidate].getDurationNanos()) {
+                candidate = i;
+            }
+        }
+        QuoteTrace current = slowest[candidate];
+        if (current == null || current.getStartedAt() < expiredBefore
+                || current.getDurationNanos() < trace.getDurationNanos()) {
+            slowest[candidate] = trace;
+            updateAdmission();
+        }
+    }
+
+    private void updateAdmission() {
+        long floor = Long.MAX_VALUE;
+        long oldest = Long.MAX_VALUE;
+        for (QuoteTrace entry : slowest) {
+            if (entry == null) {
+                floor = -1;
+                break;
+            }
+            floor = Math.min(floor, entry.getDurationNanos());
+            oldest = Math.min(oldest, entry.getStartedAt());
+        }
+        oldestStartedAt = oldest;
+        admissionFloorNanos = floor;
+    }
+
+    /**
+     * The retained traces within the window, slowest first.
+     */
+    public synchronized JsonArray toJson() {
+        long expiredBefore = System.currentTimeMillis() - windowMillis;
+        JsonArray json = new JsonArray();
+        Arrays.stream(slowest)
+                .filter(Objects::nonNull)
+                .filter(trace -> trace.getStartedAt() >= expiredBefore)
+                .sorted(Comparator.comparingLong(QuoteTrace::getDurationNanos).reversed())
+                .forEach(trace -> json.add(trace.toJson()));
+        return json;
+    }
+}
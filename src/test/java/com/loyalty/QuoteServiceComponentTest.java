@@ -1,8 +1,32 @@
 package com.loyalty;
 
+import com.loyalty.grpc.QuoteGrpcService;
+import com.loyalty.grpc.proto.PointsQuoteServiceGrpc;
+import com.loyalty.grpc.proto.QuoteBatchRequest;
+import com.loyalty.grpc.proto.QuoteBatchResponse;
+import com.loyalty.grpc.proto.QuoteResult;
+import com.loyalty.metrics.ServiceMetrics;
+import com.loyalty.model.QuoteRequest;
+import com.loyalty.model.QuoteResponse;
 import io.vertx.core.DeploymentOptions;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.eventbus.ReplyException;
+import io.vertx.core.http.HttpClient;
+import io.vertx.core.http.HttpClientOptions;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpVersion;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.grpc.client.GrpcClient;
+import io.vertx.grpc.common.GrpcMessageDecoder;
+import io.vertx.grpc.common.GrpcMessageEncoder;
+import io.vertx.grpc.common.GrpcStatus;
+import io.vertx.grpc.common.ServiceMethod;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.HttpResponse;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
@@ -16,6 +40,13 @@ import com.github.tomakehurst.wiremock.stubbing.Scenario;
 
 import org.junit.jupiter.api.Tag;
 
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
 import static org.assertj.core.api.Assertions.assertThat;
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
@@ -26,9 +57,20 @@ public class QuoteServiceComponentTest {
     private static WireMockServer fxServer;
     private static WireMockServer promoServer;
     private static final int PORT = 8080;
+    private static final int ADMIN_PORT = 9090;
     private static final int FX_PORT = 8081;
     private static final int PROMO_PORT = 8082;
 
+    private static final ServiceMethod<com.loyalty.grpc.proto.QuoteResponse, com.loyalty.grpc.proto.QuoteRequest>
+            GRPC_QUOTE = ServiceMethod.client(QuoteGrpcService.SERVICE_NAME, "Quote", GrpcMessageEncoder.encoder(),
+                    GrpcMessageDecoder.decoder(com.loyalty.grpc.proto.QuoteResponse.parser()));
+    private static final ServiceMethod<QuoteBatchResponse, QuoteBatchRequest> GRPC_QUOTE_BATCH = ServiceMethod.client(
+            QuoteGrpcService.SERVICE_NAME, "QuoteBatch", GrpcMessageEncoder.encoder(),
+            GrpcMessageDecoder.decoder(QuoteBatchResponse.parser()));
+    private static final ServiceMethod<QuoteResult, com.loyalty.grpc.proto.QuoteRequest> GRPC_QUOTE_STREAM =
+            ServiceMethod.client(QuoteGrpcService.SERVICE_NAME, "QuoteStream", GrpcMessageEncoder.encoder(),
+                    GrpcMessageDecoder.decoder(QuoteResult.parser()));
+
     @BeforeAll
     static void setup(Vertx vertx, VertxTestContext testContext) {
         fxServer = new WireMockServer(options().port(FX_PORT));
@@ -277,7 +319,7 @@ public class QuoteServiceComponentTest {
 
         client.post(PORT, "localhost", "/v1/points/quote")
                 .putHeader("content-type", "application/json")
-                .sendBuffer(io.vertx.core.buffer.Buffer.buffer("{invalid-json}"))
+                .sendBuffer(Buffer.buffer("{invalid-json}"))
                 .onComplete(testContext.succeeding(response -> {
                     testContext.verify(() -> {
                         assertThat(response.statusCode()).isEqualTo(400);
@@ -424,4 +466,669 @@ public class QuoteServiceComponentTest {
                     });
                 }));
     }
+
+    @Test
+    @DisplayName("Should apply configuration changes to a running verticle without a restart")
+    void testHotReloadConfiguration(Vertx vertx, VertxTestContext testContext) throws Exception {
+        int reloadPort = 8090;
+        Path rulesFile = Files.createTempFile("rules", ".yaml");
+        rulesFile.toFile().deleteOnExit();
+        Files.writeString(rulesFile, "rules:\n  maxPoints: 100\n");
+
+        fxServer.stubFor(get(anyUrl()).willReturn(aResponse().withStatus(200).withBody("{\"rate\": 1.0}")));
+
+        WebClient client = WebClient.create(vertx);
+        JsonObject request = new JsonObject().put("fareAmount", 1000).put("currency", "USD").put("customerTier", "NONE");
+        long appliedBefore = ServiceMetrics.get(vertx).count("config.reload.applied");
+
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", reloadPort)
+                .put("rules.path", rulesFile.toString())
+                .put("eventbus.address", "loyalty.points.quote.reload-test")
+                .put("config.scanPeriod", 100));
+
+        AtomicReference<String> deployment = new AtomicReference<>();
+        vertx.deployVerticle(new QuoteServiceVerticle(), options)
+                .compose(id -> {
+                    deployment.set(id);
+                    return client.post(reloadPort, "localhost", "/v1/points/quote").sendJsonObject(request);
+                })
+                .compose(initial -> {
+                    testContext.verify(() -> assertThat(initial.bodyAsJsonObject().getInteger("totalPoints"))
+                            .isEqualTo(100));
+                    try {
+                        Files.writeString(rulesFile, "rules:\n  maxPoints: 200\n");
+                    } catch (Exception e) {
+                        return Future.failedFuture(e);
+                    }
+                    Promise<Void> reloaded = Promise.promise();
+                    vertx.setPeriodic(100, timerId -> client.post(reloadPort, "localhost", "/v1/points/quote")
+                            .sendJsonObject(request)
+                            .onSuccess(response -> {
+                                if (response.bodyAsJsonObject().getInteger("totalPoints") == 200) {
+                                    vertx.cancelTimer(timerId);
+                                    reloaded.tryComplete();
+                                }
+                            }));
+                    return reloaded.future();
+                })
+                .eventually(() -> undeploy(vertx, deployment))
+                .onComplete(testContext.succeeding(done -> testContext.verify(() -> {
+                    assertThat(ServiceMetrics.get(vertx).count("config.reload.applied")).isGreaterThan(appliedBefore);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should reject a reload with a wrongly typed rule and keep the previous rules")
+    void testWronglyTypedRuleReloadRejected(Vertx vertx, VertxTestContext testContext) throws Exception {
+        int reloadPort = 8096;
+        Path rulesFile = Files.createTempFile("rules", ".yaml");
+        rulesFile.toFile().deleteOnExit();
+        Files.writeString(rulesFile, "rules:\n  maxPoints: 100\n");
+
+        fxServer.stubFor(get(anyUrl()).willReturn(aResponse().withStatus(200).withBody("{\"rate\": 1.0}")));
+
+        WebClient client = WebClient.create(vertx);
+        JsonObject request = new JsonObject().put("fareAmount", 1000).put("currency", "USD").put("customerTier", "NONE");
+        long rejectedBefore = ServiceMetrics.get(vertx).count("config.reload.rejected");
+
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", reloadPort)
+                .put("rules.path", rulesFile.toString())
+                .put("eventbus.address", "loyalty.points.quote.bad-rule-test")
+                .put("config.scanPeriod", 100));
+
+        AtomicReference<String> deployment = new AtomicReference<>();
+        vertx.deployVerticle(new QuoteServiceVerticle(), options)
+                .compose(id -> {
+                    deployment.set(id);
+                    try {
+                        Files.writeString(rulesFile, "rules:\n  maxPoints: \"50k\"\n");
+                    } catch (Exception e) {
+                        return Future.failedFuture(e);
+                    }
+                    Promise<Void> rejected = Promise.promise();
+                    vertx.setPeriodic(100, timerId -> {
+                        if (ServiceMetrics.get(vertx).count("config.reload.rejected") > rejectedBefore) {
+                            vertx.cancelTimer(timerId);
+                            rejected.tryComplete();
+                        }
+                    });
+                    return rejected.future();
+                })
+                .compose(rejected -> client.post(reloadPort, "localhost", "/v1/points/quote").sendJsonObject(request))
+                .eventually(() -> undeploy(vertx, deployment))
+                .onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+                    assertThat(response.statusCode()).isEqualTo(200);
+                    assertThat(response.bodyAsJsonObject().getInteger("totalPoints")).isEqualTo(100);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should serve quotes over the event bus using the same validation and calculation")
+    void testEventBusQuote(Vertx vertx, VertxTestContext testContext) {
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/AED"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("{\"rate\": 3.67}")));
+
+        QuoteRequest request = new QuoteRequest();
+        request.setFareAmount(1234.50);
+        request.setCurrency("AED");
+        request.setCustomerTier("silver");
+
+        QuoteRequest invalid = new QuoteRequest();
+        invalid.setFareAmount(-10);
+        invalid.setCurrency("USD");
+
+        vertx.eventBus().<QuoteResponse>request(QuoteServiceVerticle.QUOTE_ADDRESS, request)
+                .onComplete(testContext.succeeding(reply -> {
+                    testContext.verify(() -> {
+                        QuoteResponse response = reply.body();
+                        assertThat(response.getBasePoints()).isEqualTo(4530);
+                        assertThat(response.getTierBonus()).isEqualTo(679);
+                        assertThat(response.getTotalPoints()).isEqualTo(5209);
+                        // The request is passed by reference, so the consumer must not have normalised it in place
+                        assertThat(request.getCustomerTier()).isEqualTo("silver");
+                    });
+                    vertx.eventBus().request(QuoteServiceVerticle.QUOTE_ADDRESS, invalid)
+                            .onComplete(testContext.failing(err -> testContext.verify(() -> {
+                                assertThat(err).isInstanceOf(ReplyException.class);
+                                assertThat(((ReplyException) err).failureCode()).isEqualTo(400);
+                                assertThat(err.getMessage()).isEqualTo("Fare amount must be greater than zero");
+                                testContext.completeNow();
+                            })));
+                }));
+    }
+
+    @Test
+    @DisplayName("Should serve unary and batch quotes over gRPC on the HTTP port")
+    void testGrpcQuote(Vertx vertx, VertxTestContext testContext) {
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/JPY"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 110.5}")));
+
+        GrpcClient client = GrpcClient.client(vertx);
+        SocketAddress server = SocketAddress.inetSocketAddress(PORT, "localhost");
+        com.loyalty.grpc.proto.QuoteRequest gold = com.loyalty.grpc.proto.QuoteRequest.newBuilder()
+                .setFareAmount(10.0).setCurrency("JPY").setCustomerTier("GOLD").setCorrelationId("gold").build();
+        com.loyalty.grpc.proto.QuoteRequest invalid = com.loyalty.grpc.proto.QuoteRequest.newBuilder()
+                .setFareAmount(0).setCurrency("USD").setCorrelationId("invalid").build();
+
+        client.request(server, GRPC_QUOTE)
+                .compose(call -> call.send(gold).compose(v -> call.response()))
+                .compose(response -> response.last())
+                .compose(reply -> {
+                    testContext.verify(() -> {
+                        assertThat(reply.getBasePoints()).isEqualTo(1105);
+                        assertThat(reply.getTierBonus()).isEqualTo(331);
+                        assertThat(reply.getTotalPoints()).isEqualTo(1436);
+                    });
+                    return client.request(server, GRPC_QUOTE_BATCH);
+                })
+                .compose(call -> call.send(QuoteBatchRequest.newBuilder().addRequests(gold).addRequests(invalid)
+                        .build()).compose(v -> call.response()))
+                .compose(response -> response.last())
+                .onComplete(testContext.succeeding((QuoteBatchResponse batch) -> testContext.verify(() -> {
+                    assertThat(batch.getResultsCount()).isEqualTo(2);
+                    assertThat(batch.getResults(0).getCorrelationId()).isEqualTo("gold");
+                    assertThat(batch.getResults(0).getQuote().getTotalPoints()).isEqualTo(1436);
+                    assertThat(batch.getResults(1).getError().getCode()).isEqualTo(400);
+                    assertThat(batch.getResults(1).getError().getMessage())
+                            .isEqualTo("Fare amount must be greater than zero");
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should fail a unary gRPC call with UNAVAILABLE when the FX service is down")
+    void testGrpcQuoteUpstreamUnavailable(Vertx vertx, VertxTestContext testContext) {
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/ZAR")).willReturn(aResponse().withStatus(500)));
+
+        GrpcClient client = GrpcClient.client(vertx);
+        SocketAddress server = SocketAddress.inetSocketAddress(PORT, "localhost");
+
+        client.request(server, GRPC_QUOTE)
+                .compose(call -> call.send(com.loyalty.grpc.proto.QuoteRequest.newBuilder()
+                        .setFareAmount(100).setCurrency("ZAR").build()).compose(v -> call.response()))
+                .compose(response -> response.end().transform(ended -> Future.succeededFuture(response)))
+                .onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+                    assertThat(response.status()).isEqualTo(GrpcStatus.UNAVAILABLE);
+                    assertThat(response.statusMessage()).startsWith("Failed to fetch external data");
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should stream a result per gRPC request, including errors, and end after the client half-closes")
+    void testGrpcQuoteStream(Vertx vertx, VertxTestContext testContext) {
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/JPY"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 110.5}")));
+        // Slow enough that the client has half-closed before this result is written
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/NOK"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 0.1}").withFixedDelay(300)));
+
+        GrpcClient client = GrpcClient.client(vertx);
+        SocketAddress server = SocketAddress.inetSocketAddress(PORT, "localhost");
+
+        client.request(server, GRPC_QUOTE_STREAM)
+                .compose(call -> {
+                    call.write(com.loyalty.grpc.proto.QuoteRequest.newBuilder()
+                            .setFareAmount(10.0).setCurrency("JPY").setCustomerTier("GOLD").setCorrelationId("gold")
+                            .build());
+                    call.write(com.loyalty.grpc.proto.QuoteRequest.newBuilder()
+                            .setFareAmount(0).setCurrency("USD").setCorrelationId("invalid").build());
+                    call.write(com.loyalty.grpc.proto.QuoteRequest.newBuilder()
+                            .setFareAmount(1000).setCurrency("NOK").setCorrelationId("slow").build());
+                    call.end();
+                    return call.response();
+                })
+                .compose(response -> response.collect(Collectors.toMap(QuoteResult::getCorrelationId,
+                        result -> result)).map(results -> {
+                            testContext.verify(() -> assertThat(response.status()).isEqualTo(GrpcStatus.OK));
+                            return results;
+                        }))
+                .onComplete(testContext.succeeding(results -> testContext.verify(() -> {
+                    assertThat(results).containsOnlyKeys("gold", "invalid", "slow");
+                    assertThat(results.get("gold").getQuote().getTotalPoints()).isEqualTo(1436);
+                    assertThat(results.get("invalid").getError().getCode()).isEqualTo(400);
+                    assertThat(results.get("slow").getQuote().getTotalPoints()).isEqualTo(100);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should hold at most grpc.maxBatchSize streamed quotes in flight at once")
+    void testGrpcQuoteStreamBounded(Vertx vertx, VertxTestContext testContext) {
+        int streamPort = 8098;
+        JsonObject services = new JsonObject()
+                .put("fx", new JsonObject().put("url", "http://localhost:" + FX_PORT + "/v1/fx-rate/")
+                        .put("timeout", 2000).put("retries", 1).put("staleWindow", 0))
+                .put("promo", new JsonObject().put("url", "http://localhost:" + PROMO_PORT + "/v1/promos/")
+                        .put("timeout", 1000));
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", streamPort)
+                .put("eventbus.address", "loyalty.points.quote.stream-test")
+                .put("grpc.maxBatchSize", 2)
+                .put("services", services)
+                .put("cache", new JsonObject().put("type", "local").put("fxTtl", 0).put("promoTtl", 0)));
+
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/SGD"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 0.74}").withFixedDelay(300)));
+
+        GrpcClient client = GrpcClient.client(vertx);
+        SocketAddress server = SocketAddress.inetSocketAddress(streamPort, "localhost");
+        long[] started = new long[1];
+
+        AtomicReference<String> deployment = new AtomicReference<>();
+        vertx.deployVerticle(new QuoteServiceVerticle(), options)
+                .compose(id -> {
+                    deployment.set(id);
+                    started[0] = System.nanoTime();
+                    return client.request(server, GRPC_QUOTE_STREAM);
+                })
+                .compose(call -> {
+                    for (int i = 0; i < 6; i++) {
+                        call.write(com.loyalty.grpc.proto.QuoteRequest.newBuilder()
+                                .setFareAmount(100).setCurrency("SGD").setCorrelationId("quote-" + i).build());
+                    }
+                    call.end();
+                    return call.response();
+                })
+                .compose(response -> response.collect(Collectors.counting()))
+                .eventually(() -> undeploy(vertx, deployment))
+                .onComplete(testContext.succeeding(count -> testContext.verify(() -> {
+                    long elapsedMillis = (System.nanoTime() - started[0]) / 1_000_000;
+                    assertThat(count).isEqualTo(6);
+                    // Three rounds of two 300ms FX calls; unbounded, all six would overlap
+                    assertThat(elapsedMillis).isGreaterThanOrEqualTo(850);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should fail a unary gRPC call with INVALID_ARGUMENT when the client sends no request")
+    void testGrpcQuoteWithoutMessage(Vertx vertx, VertxTestContext testContext) {
+        // The Vert.x gRPC client refuses to half-close an empty call, so send the bare HTTP/2 request
+        HttpClient client = vertx.createHttpClient(new HttpClientOptions()
+                .setProtocolVersion(HttpVersion.HTTP_2)
+                .setHttp2ClearTextUpgrade(false));
+
+        client.request(HttpMethod.POST, PORT, "localhost",
+                        "/" + PointsQuoteServiceGrpc.getQuoteMethod().getFullMethodName())
+                .compose(request -> request.putHeader("content-type", "application/grpc")
+                        .putHeader("te", "trailers")
+                        .send())
+                .compose(response -> response.end().map(v -> response))
+                .onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+                    // With no messages the server sends a trailers-only response, so the status is a header
+                    assertThat(response.getHeader("grpc-status"))
+                            .isEqualTo(String.valueOf(GrpcStatus.INVALID_ARGUMENT.code));
+                    assertThat(URLDecoder.decode(response.getHeader("grpc-message"), StandardCharsets.UTF_8))
+                            .isEqualTo("Request message is missing");
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should serve the last known FX rate with a warning when retries are exhausted and stale fallback is on")
+    void testStaleFxFallback(Vertx vertx, VertxTestContext testContext) {
+        int stalePort = 8091;
+        JsonObject services = new JsonObject()
+                .put("fx", new JsonObject().put("url", "http://localhost:" + FX_PORT + "/v1/fx-rate/")
+                        .put("timeout", 2000).put("retries", 2).put("staleWindow", 60000))
+                .put("promo", new JsonObject().put("url", "http://localhost:" + PROMO_PORT + "/v1/promos/")
+                        .put("timeout", 1000));
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", stalePort)
+                .put("eventbus.address", "loyalty.points.quote.stale-test")
+                .put("services", services)
+                .put("cache", new JsonObject().put("type", "local").put("fxTtl", 0).put("promoTtl", 0)));
+
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/CHF"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 0.9}")));
+
+        WebClient client = WebClient.create(vertx);
+        JsonObject request = new JsonObject().put("fareAmount", 100).put("currency", "CHF").put("customerTier", "NONE");
+
+        AtomicReference<String> deployment = new AtomicReference<>();
+        vertx.deployVerticle(new QuoteServiceVerticle(), options)
+                .compose(id -> {
+                    deployment.set(id);
+                    return client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(request);
+                })
+                .compose(fresh -> {
+                    testContext.verify(() -> {
+                        assertThat(fresh.statusCode()).isEqualTo(200);
+                        assertThat(fresh.bodyAsJsonObject().getJsonArray("warnings")).doesNotContain("FX_RATE_STALE");
+                    });
+                    fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/CHF")).willReturn(aResponse().withStatus(500)));
+                    return client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(request);
+                })
+                .eventually(() -> undeploy(vertx, deployment))
+                .onComplete(testContext.succeeding(stale -> testContext.verify(() -> {
+                    assertThat(stale.statusCode()).isEqualTo(200);
+                    JsonObject body = stale.bodyAsJsonObject();
+                    assertThat(body.getDouble("effectiveFxRate")).isEqualTo(0.9);
+                    assertThat(body.getInteger("totalPoints")).isEqualTo(90);
+                    assertThat(body.getJsonArray("warnings")).contains("FX_RATE_STALE");
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should serve the stale FX rate at once while a background refresh is retrying the FX service")
+    void testStaleFxWhileRevalidating(Vertx vertx, VertxTestContext testContext) {
+        int stalePort = 8097;
+        JsonObject services = new JsonObject()
+                .put("fx", new JsonObject().put("url", "http://localhost:" + FX_PORT + "/v1/fx-rate/")
+                        .put("timeout", 300).put("retries", 2).put("staleWindow", 60000))
+                .put("promo", new JsonObject().put("url", "http://localhost:" + PROMO_PORT + "/v1/promos/")
+                        .put("timeout", 1000));
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", stalePort)
+                .put("eventbus.address", "loyalty.points.quote.revalidate-test")
+                .put("services", services)
+                .put("cache", new JsonObject().put("type", "local").put("fxTtl", 100).put("promoTtl", 0)));
+
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/HKD"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 0.128}")));
+
+        WebClient client = WebClient.create(vertx);
+        JsonObject request = new JsonObject().put("fareAmount", 1000).put("currency", "HKD").put("customerTier", "NONE");
+        long[] secondStarted = new long[1];
+
+        AtomicReference<String> deployment = new AtomicReference<>();
+        vertx.deployVerticle(new QuoteServiceVerticle(), options)
+                .compose(id -> {
+                    deployment.set(id);
+                    return client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(request);
+                })
+                .compose(fresh -> {
+                    testContext.verify(() -> assertThat(fresh.statusCode()).isEqualTo(200));
+                    // Every FX call now runs into the client timeout, so a refresh takes the whole budget
+                    fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/HKD"))
+                            .willReturn(aResponse().withStatus(200).withFixedDelay(2000).withBody("{\"rate\": 9.9}")));
+                    return delay(vertx, 150);
+                })
+                .compose(expired -> client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(request))
+                .compose(first -> {
+                    testContext.verify(() -> assertThat(first.bodyAsJsonObject().getJsonArray("warnings"))
+                            .contains("FX_RATE_STALE"));
+                    secondStarted[0] = System.nanoTime();
+                    return client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(request);
+                })
+                .eventually(() -> undeploy(vertx, deployment))
+                .onComplete(testContext.succeeding(second -> testContext.verify(() -> {
+                    long elapsedMillis = (System.nanoTime() - secondStarted[0]) / 1_000_000;
+                    assertThat(second.statusCode()).isEqualTo(200);
+                    assertThat(second.bodyAsJsonObject().getJsonArray("warnings")).contains("FX_RATE_STALE");
+                    assertThat(second.bodyAsJsonObject().getInteger("totalPoints")).isEqualTo(128);
+                    // Well under the 600ms FX budget the background refresh is still using
+                    assertThat(elapsedMillis).isLessThan(250);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should measure the stale FX window from the upstream fetch, not from cache hits")
+    void testStaleFxWindowWithCache(Vertx vertx, VertxTestContext testContext) {
+        int stalePort = 8093;
+        JsonObject services = new JsonObject()
+                .put("fx", new JsonObject().put("url", "http://localhost:" + FX_PORT + "/v1/fx-rate/")
+                        .put("timeout", 1000).put("retries", 1).put("staleWindow", 2000))
+                .put("promo", new JsonObject().put("url", "http://localhost:" + PROMO_PORT + "/v1/promos/")
+                        .put("timeout", 1000));
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", stalePort)
+                .put("eventbus.address", "loyalty.points.quote.stale-cache-test")
+                .put("services", services)
+                .put("cache", new JsonObject().put("type", "local").put("fxTtl", 1000).put("promoTtl", 0)));
+
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/dkk"))
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 0.15}")));
+
+        WebClient client = WebClient.create(vertx);
+        JsonObject lowerCase = new JsonObject().put("fareAmount", 100).put("currency", "dkk").put("customerTier", "NONE");
+        JsonObject upperCase = lowerCase.copy().put("currency", "DKK");
+        AtomicReference<String> deployment = new AtomicReference<>();
+
+        vertx.deployVerticle(new QuoteServiceVerticle(), options)
+                .compose(id -> {
+                    deployment.set(id);
+                    // Fetched from the FX service at t0
+                    return client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(lowerCase);
+                })
+                .compose(fresh -> {
+                    testContext.verify(() -> assertThat(fresh.statusCode()).isEqualTo(200));
+                    return delay(vertx, 800);
+                })
+                // A cache hit at t0 + 800ms must not refresh the known rate's age
+                .compose(waited -> client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(lowerCase))
+                .compose(cached -> {
+                    testContext.verify(() -> assertThat(cached.statusCode()).isEqualTo(200));
+                    fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/DKK")).willReturn(aResponse().withStatus(500)));
+                    return delay(vertx, 600);
+                })
+                // Cache expired, FX down, within the window of t0: served stale, whatever the currency's case
+                .compose(waited -> client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(upperCase))
+                .compose(stale -> {
+                    testContext.verify(() -> {
+                        assertThat(stale.statusCode()).isEqualTo(200);
+                        assertThat(stale.bodyAsJsonObject().getJsonArray("warnings")).contains("FX_RATE_STALE");
+                    });
+                    return delay(vertx, 1000);
+                })
+                // Past the window of t0, though within the window of the cache hit
+                .compose(waited -> client.post(stalePort, "localhost", "/v1/points/quote").sendJsonObject(upperCase))
+                .eventually(() -> undeploy(vertx, deployment))
+                .onComplete(testContext.succeeding(expired -> testContext.verify(() -> {
+                    assertThat(expired.statusCode()).isEqualTo(500);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should propagate trace context upstream and keep slow requests with their stage breakdown")
+    void testTracingAndSlowRequests(Vertx vertx, VertxTestContext testContext) {
+        String traceId = "4bf92f3577b34da6a3ce929d0e0e4736";
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/SEK"))
+                .inScenario("Traced Retry")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(503))
+                .willSetStateTo("Recovered"));
+        fxServer.stubFor(get(urlEqualTo("/v1/fx-rate/SEK"))
+                .inScenario("Traced Retry")
+                .whenScenarioStateIs("Recovered")
+                .willReturn(aResponse().withStatus(200).withBody("{\"rate\": 0.1}").withFixedDelay(500)));
+
+        WebClient client = WebClient.create(vertx);
+        JsonObject request = new JsonObject().put("fareAmount", 1000).put("currency", "SEK").put("customerTier", "NONE");
+
+        client.post(PORT, "localhost", "/v1/points/quote")
+                .putHeader("traceparent", "00-" + traceId + "-00f067aa0ba902b7-01")
+                .sendJsonObject(request)
+                .compose(response -> {
+                    testContext.verify(() -> {
+                        assertThat(response.statusCode()).isEqualTo(200);
+                        assertThat(response.getHeader("x-trace-id")).isEqualTo(traceId);
+                        fxServer.verify(2, getRequestedFor(urlEqualTo("/v1/fx-rate/SEK"))
+                                .withHeader("traceparent", matching("00-" + traceId + "-[0-9a-f]{16}-01")));
+                    });
+                    return client.get(ADMIN_PORT, "127.0.0.1", "/admin/slow-requests").send();
+                })
+                .onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+                    JsonObject trace = response.bodyAsJsonArray().stream()
+                            .map(JsonObject.class::cast)
+                            .filter(entry -> traceId.equals(entry.getString("traceId")))
+                            .findFirst()
+                            .orElseThrow();
+                    assertThat(trace.getDouble("durationMs")).isGreaterThanOrEqualTo(500);
+                    assertThat(trace.getJsonArray("stages").stream()
+                            .map(stage -> ((JsonObject) stage).getString("name")))
+                            .contains("decode", "validation", "fx", "fx.attempt1", "fx.attempt2", "calculation");
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should serve the admin API on its own port and only invalidate FX and promo keys")
+    void testAdminApi(Vertx vertx, VertxTestContext testContext) {
+        WebClient client = WebClient.create(vertx);
+
+        client.delete(PORT, "localhost", "/admin/cache/fx:AED").send()
+                .compose(publicPort -> {
+                    testContext.verify(() -> assertThat(publicPort.statusCode()).isEqualTo(404));
+                    return client.delete(ADMIN_PORT, "127.0.0.1", "/admin/cache/config:secrets").send();
+                })
+                .compose(unknownKey -> {
+                    testContext.verify(() -> assertThat(unknownKey.statusCode()).isEqualTo(400));
+                    return client.delete(ADMIN_PORT, "127.0.0.1", "/admin/cache/fx:AED").send();
+                })
+                .onComplete(testContext.succeeding(invalidated -> testContext.verify(() -> {
+                    assertThat(invalidated.statusCode()).isEqualTo(204);
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should refuse to start with a clustered cache when Vert.x is not clustered")
+    void testClusteredCacheRequiresCluster(Vertx vertx, VertxTestContext testContext) {
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", 8095)
+                .put("eventbus.address", "loyalty.points.quote.unclustered-test")
+                .put("cache", new JsonObject().put("type", "clustered")));
+
+        vertx.deployVerticle(new QuoteServiceVerticle(), options)
+                .onComplete(testContext.failing(err -> testContext.verify(() -> {
+                    assertThat(err).isInstanceOf(IllegalArgumentException.class);
+                    assertThat(err.getMessage()).contains("not clustered");
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should trace requests rejected before validation and keep them in the slow request log")
+    void testRejectedRequestTraced(VertxTestContext testContext) {
+        // A Vertx of its own, so the slow request log starts empty and cannot be crowded out by other tests
+        Vertx isolated = Vertx.vertx();
+        int isolatedPort = 8094;
+        String traceId = "0af7651916cd43dd8448eb211c80319c";
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", isolatedPort)
+                .put("admin.port", 9094));
+        WebClient client = WebClient.create(isolated);
+
+        Future<HttpResponse<Buffer>> slowRequests = isolated.deployVerticle(new QuoteServiceVerticle(), options)
+                .compose(id -> client.post(isolatedPort, "localhost", "/v1/points/quote")
+                        .putHeader("content-type", "application/json")
+                        .putHeader("traceparent", "00-" + traceId + "-b7ad6b7169203331-01")
+                        .sendBuffer(Buffer.buffer("{invalid-json}")))
+                .compose(rejected -> {
+                    testContext.verify(() -> {
+                        assertThat(rejected.statusCode()).isEqualTo(400);
+                        assertThat(rejected.getHeader("x-trace-id")).isEqualTo(traceId);
+                    });
+                    return client.get(9094, "127.0.0.1", "/admin/slow-requests").send();
+                });
+        slowRequests.onComplete(done -> isolated.close());
+        slowRequests.onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+            JsonObject trace = response.bodyAsJsonArray().getJsonObject(0);
+            assertThat(trace.getString("traceId")).isEqualTo(traceId);
+            assertThat(trace.getString("outcome")).isEqualTo("400");
+            JsonObject decode = trace.getJsonArray("stages").getJsonObject(0);
+            assertThat(decode.getString("name")).isEqualTo("decode");
+            assertThat(decode.getString("outcome")).isEqualTo("Invalid JSON format");
+            assertThat(decode.getDouble("durationMs")).isGreaterThanOrEqualTo(0);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Should detect a blocked event loop and capture its stack in the metrics")
+    void testEventLoopBlockingDetection(Vertx vertx, VertxTestContext testContext) {
+        int monitoredPort = 8092;
+        BlockableVerticle verticle = new BlockableVerticle();
+        DeploymentOptions options = new DeploymentOptions().setConfig(new JsonObject()
+                .put("http.port", monitoredPort)
+                .put("admin.port", 9092)
+                .put("eventbus.address", "loyalty.points.quote.monitoring-test")
+                .put("monitoring", new JsonObject().put("interval", 20).put("blockedThreshold", 100)));
+        long blockedBefore = ServiceMetrics.get(vertx).count("eventloop.blocked");
+
+        WebClient client = WebClient.create(vertx);
+        AtomicReference<String> deployment = new AtomicReference<>();
+        vertx.deployVerticle(verticle, options)
+                .compose(id -> {
+                    deployment.set(id);
+                    verticle.blockEventLoop(400);
+                    return Future.<Void>future(p -> vertx.setTimer(600, t -> p.complete()));
+                })
+                .compose(waited -> client.get(9092, "127.0.0.1", "/admin/metrics").send())
+                .eventually(() -> undeploy(vertx, deployment))
+                .onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+                    JsonObject metrics = response.bodyAsJsonObject();
+                    assertThat(metrics.getJsonObject("counters").getLong("eventloop.blocked"))
+                            .isGreaterThan(blockedBefore);
+                    JsonObject gauges = metrics.getJsonObject("gauges");
+                    assertThat(gauges.fieldNames()).anyMatch(name -> name.endsWith(".lagMs"));
+                    assertThat(gauges.fieldNames()).anyMatch(name -> name.endsWith(".pendingTasks"));
+                    assertThat(gauges.fieldNames()).anyMatch(name -> name.startsWith("eventloop.vert.x-eventloop-thread-")
+                            && name.contains("." + deployment.get() + ".") && name.endsWith(".lagMs"));
+                    assertThat(gauges.fieldNames()).contains("workerPool.shared.active", "workerPool.shared.utilisation");
+                    assertThat(gauges.fieldNames().stream()
+                            .filter(name -> name.endsWith(".lastBlockedStack"))
+                            .map(gauges::getJsonArray)
+                            .anyMatch(stack -> stack.encode().contains("Thread.sleep"))).isTrue();
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should keep separate event loop gauges for instances sharing an event loop")
+    void testEventLoopGaugesPerInstance(VertxTestContext testContext) {
+        // One event loop, so both instances of the deployment run on the same thread
+        Vertx isolated = Vertx.vertx(new VertxOptions().setEventLoopPoolSize(1));
+        DeploymentOptions options = new DeploymentOptions().setInstances(2).setConfig(new JsonObject()
+                .put("http.port", 8099)
+                .put("admin.port", 9099));
+        WebClient client = WebClient.create(isolated);
+        AtomicReference<String> deployment = new AtomicReference<>();
+
+        Future<HttpResponse<Buffer>> metrics = isolated.deployVerticle(QuoteServiceVerticle::new, options)
+                .compose(id -> {
+                    deployment.set(id);
+                    return client.get(9099, "127.0.0.1", "/admin/metrics").send();
+                });
+        metrics.onComplete(done -> isolated.close());
+        metrics.onComplete(testContext.succeeding(response -> testContext.verify(() -> {
+            JsonObject gauges = response.bodyAsJsonObject().getJsonObject("gauges");
+            assertThat(gauges.fieldNames().stream()
+                    .filter(name -> name.contains("." + deployment.get() + ".") && name.endsWith(".lagMs")))
+                    .hasSize(2);
+            testContext.completeNow();
+        })));
+    }
+
+    private static Future<Void> delay(Vertx vertx, long millis) {
+        return Future.future(p -> vertx.setTimer(millis, t -> p.complete()));
+    }
+
+    /** Undeploys a verticle started by a single test, if it was deployed at all. */
+    private static Future<Void> undeploy(Vertx vertx, AtomicReference<String> deployment) {
+        return deployment.get() == null ? Future.succeededFuture() : vertx.undeploy(deployment.get());
+    }
+
+    /** Exposes the verticle's context so a test can block its event loop. */
+    static class BlockableVerticle extends QuoteServiceVerticle {
+        void blockEventLoop(long millis) {
+            context.runOnContext(v -> {
+                try {
+                    Thread.sleep(millis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,207 @@
+package com.loyalty.cache;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.loyalty.metrics.ServiceMetrics;
+import io.vertx.core.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.VertxOptions;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.spi.cluster.hazelcast.ConfigUtil;
+import io.vertx.spi.cluster.hazelcast.HazelcastClusterManager;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two clustered Vert.x instances with embedded Hazelcast, joined over loopback, stand in for two
+ * nodes of the service. Values cross the cluster serialised and the per-key lock is cluster-wide.
+ */
+@ExtendWith(VertxExtension.class)
+public class ClusteredRateCacheTest {
+
+    private static Vertx nodeA;
+    private static Vertx nodeB;
+
+    @BeforeAll
+    static void startCluster(VertxTestContext testContext) {
+        clusteredVertx()
+                .compose(first -> {
+                    nodeA = first;
+                    return clusteredVertx();
+                })
+                .onComplete(testContext.succeeding(second -> {
+                    nodeB = second;
+                    testContext.completeNow();
+                }));
+    }
+
+    @AfterAll
+    static void stopCluster(VertxTestContext testContext) {
+        Future.all(nodeA.close(), nodeB.close()).onComplete(testContext.succeedingThenComplete());
+    }
+
+    private static Future<Vertx> clusteredVertx() {
+        Config config = ConfigUtil.loadConfig();
+        config.setClusterName("loyalty-rate-cache-test");
+        config.setProperty("hazelcast.phone.home.enabled", "false");
+        config.getNetworkConfig().getInterfaces().setEnabled(true).addInterface("127.0.0.1");
+        JoinConfig join = config.getNetworkConfig().getJoin();
+        join.getMulticastConfig().setEnabled(false);
+        join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+
+        VertxOptions options = new VertxOptions();
+        options.getEventBusOptions().setHost("127.0.0.1");
+        return Vertx.builder()
+                .with(options)
+                .withClusterManager(new HazelcastClusterManager(config))
+                .buildClustered();
+    }
+
+    /**
+     * Creates a cache on {@code node}'s event loop and, once it receives invalidations, runs
+     * {@code test} there.
+     */
+    private static <T> Future<T> onNode(Vertx node, ServiceMetrics metrics, Function<RateCache, Future<T>> test) {
+        Promise<T> result = Promise.promise();
+        node.runOnContext(v -> {
+            // A near cache that outlives the test, so only an invalidation can clear it
+            ClusteredRateCache cache = new ClusteredRateCache(node, 1000, 60000, 100, metrics);
+            cache.ready().compose(ready -> test.apply(cache)).onComplete(result);
+        });
+        return result.future();
+    }
+
+    @Test
+    @DisplayName("Should load a key once across nodes and serve the shared value to both")
+    void testSingleFlightAcrossNodes(VertxTestContext testContext) {
+        ServiceMetrics metrics = new ServiceMetrics();
+        AtomicInteger loads = new AtomicInteger();
+        Promise<Void> loading = Promise.promise();
+
+        Future<JsonObject> first = onNode(nodeA, metrics, cache -> cache.getOrLoad("fx:AED", 60000, 2000, () -> {
+            loads.incrementAndGet();
+            loading.complete();
+            return Future.future(p -> nodeA.setTimer(200, t -> p.complete(new JsonObject().put("rate", 3.67))));
+        }));
+        // Only ask node B once node A holds the lock and is calling the upstream
+        Future<JsonObject> second = loading.future().compose(v -> onNode(nodeB, metrics,
+                cache -> cache.getOrLoad("fx:AED", 60000, 2000, () -> {
+                    loads.incrementAndGet();
+                    return Future.succeededFuture(new JsonObject().put("rate", 9.99));
+                })));
+
+        Future.all(first, second).onComplete(testContext.succeeding(done -> testContext.verify(() -> {
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(first.result().getDouble("rate")).isEqualTo(3.67);
+            assertThat(second.result().getDouble("rate")).isEqualTo(3.67);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Should wait for a slow upstream load on another node for as long as the load may take")
+    void testWaitsForSlowLoad(VertxTestContext testContext) {
+        ServiceMetrics metrics = new ServiceMetrics();
+        AtomicInteger loads = new AtomicInteger();
+        Promise<Void> loading = Promise.promise();
+
+        // Slower than the lock margin, within the loader's own budget
+        Future<JsonObject> first = onNode(nodeA, metrics, cache -> cache.getOrLoad("fx:JPY", 60000, 1500, () -> {
+            loads.incrementAndGet();
+            loading.complete();
+            return Future.future(p -> nodeA.setTimer(1400, t -> p.complete(new JsonObject().put("rate", 110.5))));
+        }));
+        Future<JsonObject> second = loading.future().compose(v -> onNode(nodeB, metrics,
+                cache -> cache.getOrLoad("fx:JPY", 60000, 1500, () -> {
+                    loads.incrementAndGet();
+                    return Future.succeededFuture(new JsonObject().put("rate", 1.0));
+                })));
+
+        Future.all(first, second).onComplete(testContext.succeeding(done -> testContext.verify(() -> {
+            assertThat(loads.get()).isEqualTo(1);
+            assertThat(second.result().getDouble("rate")).isEqualTo(110.5);
+            testContext.completeNow();
+        })));
+    }
+
+    @Test
+    @DisplayName("Should fail instead of calling the upstream when another node's load overruns its budget")
+    void testLockTimeoutDoesNotLoad(VertxTestContext testContext) {
+        ServiceMetrics metrics = new ServiceMetrics();
+        AtomicInteger loads = new AtomicInteger();
+        Promise<Void> loading = Promise.promise();
+        Promise<JsonObject> stuck = Promise.promise();
+
+        onNode(nodeA, metrics, cache -> cache.getOrLoad("fx:SEK", 60000, 100, () -> {
+            loads.incrementAndGet();
+            loading.complete();
+            return stuck.future();
+        }));
+        loading.future()
+                .compose(v -> onNode(nodeB, metrics, cache -> cache.getOrLoad("fx:SEK", 60000, 100, () -> {
+                    loads.incrementAndGet();
+                    return Future.succeededFuture(new JsonObject().put("rate", 0.1));
+                })))
+                .onComplete(testContext.failing(err -> testContext.verify(() -> {
+                    assertThat(loads.get()).isEqualTo(1);
+                    assertThat(metrics.count("cache.lock.timeout")).isEqualTo(1);
+                    stuck.fail("test finished");
+                    testContext.completeNow();
+                })));
+    }
+
+    @Test
+    @DisplayName("Should drop an invalidated key on every node")
+    void testInvalidationBroadcast(VertxTestContext testContext) {
+        ServiceMetrics metrics = new ServiceMetrics();
+        AtomicInteger loads = new AtomicInteger();
+        Supplier<Future<JsonObject>> loader = () -> Future.succeededFuture(
+                new JsonObject().put("bonus", loads.incrementAndGet()));
+
+        onNode(nodeB, metrics, cacheB -> {
+            Context contextB = Vertx.currentContext();
+            return cacheB.getOrLoad("promo:SUMMER25", 60000, 1000, loader)
+                    .compose(cached -> onNode(nodeA, metrics,
+                            cacheA -> invalidateUntilReloaded(cacheA, cacheB, contextB, loader)));
+        })
+                .onComplete(testContext.succeeding(reloaded -> testContext.verify(() -> {
+                    assertThat(loads.get()).isEqualTo(2);
+                    assertThat(reloaded.getInteger("bonus")).isEqualTo(2);
+                    testContext.completeNow();
+                })));
+    }
+
+    /**
+     * Node B's subscription takes a moment to become visible to node A after it registers, so
+     * node A re-sends the invalidation until node B's near cache has dropped the key.
+     */
+    private static Future<JsonObject> invalidateUntilReloaded(RateCache cacheA, RateCache cacheB, Context contextB,
+                                                              Supplier<Future<JsonObject>> loader) {
+        return cacheA.invalidate("promo:SUMMER25")
+                .compose(invalidated -> Future.<Void>future(p -> nodeA.setTimer(100, t -> p.complete())))
+                .compose(waited -> onContext(contextB,
+                        () -> cacheB.getOrLoad("promo:SUMMER25", 60000, 1000, loader)))
+                .compose(value -> value.getInteger("bonus") == 1
+                        ? invalidateUntilReloaded(cacheA, cacheB, contextB, loader)
+                        : Future.succeededFuture(value));
+    }
+
+    private static <T> Future<T> onContext(Context context, Supplier<Future<T>> action) {
+        Promise<T> result = Promise.promise();
+        context.runOnContext(v -> action.get().onComplete(result));
+        return result.future();
+    }
+}
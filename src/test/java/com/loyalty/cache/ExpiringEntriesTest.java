@@ -0,0 +1,72 @@
+package com.loyalty.cache;
+
+import com.loyalty.metrics.ServiceMetrics;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ExpiringEntriesTest {
+
+    @Test
+    @DisplayName("Should stay within the size limit by evicting the entries closest to expiry")
+    void testSizeLimit() {
+        ServiceMetrics metrics = new ServiceMetrics();
+        ExpiringEntries entries = new ExpiringEntries(new HashMap<>(), 3, metrics);
+
+        entries.put("fx:AED", new JsonObject().put("rate", 3.67), 60000);
+        for (int i = 0; i < 10; i++) {
+            entries.put("promo:RANDOM" + i, new JsonObject().put("bonus", i), 1000 + i);
+        }
+
+        assertThat(entries.size()).isEqualTo(3);
+        assertThat(metrics.count("cache.evicted")).isEqualTo(8);
+        assertThat(entries.get("fx:AED")).isNotNull();
+        assertThat(entries.get("promo:RANDOM9").getInteger("bonus")).isEqualTo(9);
+        assertThat(entries.get("promo:RANDOM0")).isNull();
+    }
+
+    @Test
+    @DisplayName("Should evict by the expiry of the current value after a key is replaced or removed")
+    void testReplacedEntryReindexed() {
+        ServiceMetrics metrics = new ServiceMetrics();
+        ExpiringEntries entries = new ExpiringEntries(new HashMap<>(), 2, metrics);
+
+        entries.put("fx:EUR", new JsonObject().put("rate", 1.1), 1000);
+        entries.put("fx:GBP", new JsonObject().put("rate", 0.8), 2000);
+        entries.put("fx:EUR", new JsonObject().put("rate", 1.2), 60000);
+        entries.put("fx:USD", new JsonObject().put("rate", 1.0), 60000);
+
+        assertThat(entries.get("fx:EUR").getDouble("rate")).isEqualTo(1.2);
+        assertThat(entries.get("fx:GBP")).isNull();
+        assertThat(metrics.count("cache.evicted")).isEqualTo(1);
+
+        entries.remove("fx:EUR");
+        entries.put("fx:JPY", new JsonObject().put("rate", 150.0), 60000);
+        assertThat(entries.size()).isEqualTo(2);
+        assertThat(metrics.count("cache.evicted")).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should drop expired entries when they are read or when room is needed")
+    void testExpiredEntriesRemoved() throws InterruptedException {
+        ServiceMetrics metrics = new ServiceMetrics();
+        ExpiringEntries entries = new ExpiringEntries(new HashMap<>(), 2, metrics);
+
+        entries.put("promo:A", new JsonObject(), 1);
+        entries.put("promo:B", new JsonObject(), 1);
+        Thread.sleep(5);
+
+        assertThat(entries.get("promo:A")).isNull();
+        assertThat(entries.size()).isEqualTo(1);
+
+        entries.put("promo:C", new JsonObject(), 60000);
+        entries.put("promo:D", new JsonObject(), 60000);
+        assertThat(entries.size()).isEqualTo(2);
+        // Expired entries are swept, not counted as evictions
+        assertThat(metrics.count("cache.evicted")).isZero();
+    }
+}
@@ -0,0 +1,75 @@
+package com.loyalty.config;
+
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ServiceSettingsTest {
+
+    private static JsonObject config() {
+        return new JsonObject().put("services", new JsonObject()
+                .put("fx", new JsonObject().put("url", "http://localhost:8081/v1/fx-rate/").put("timeout", 2000))
+                .put("promo", new JsonObject().put("url", "http://localhost:8082/v1/promos/").put("timeout", 1000)));
+    }
+
+    @Test
+    @DisplayName("Should parse a valid configuration with defaults for optional sections")
+    void testValidConfiguration() {
+        ServiceSettings settings = ServiceSettings.from(config());
+
+        assertThat(settings.getFx().getTimeout()).isEqualTo(2000);
+        assertThat(settings.getFx().getRetries()).isEqualTo(1);
+        assertThat(settings.getCache().getType()).isEqualTo("local");
+        assertThat(settings.getCache().getMaxEntries()).isEqualTo(10000);
+    }
+
+    @Test
+    @DisplayName("Should reject values of the wrong type as invalid configuration, naming the key")
+    void testWronglyTypedValues() {
+        JsonObject timeout = config();
+        timeout.getJsonObject("services").getJsonObject("fx").put("timeout", "2s");
+        assertThatThrownBy(() -> ServiceSettings.from(timeout))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("services.fx.timeout");
+
+        JsonObject maxEntries = config().put("cache", new JsonObject().put("maxEntries", "lots"));
+        assertThatThrownBy(() -> ServiceSettings.from(maxEntries))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cache.maxEntries");
+
+        JsonObject monitoring = config().put("monitoring", "on");
+        assertThatThrownBy(() -> ServiceSettings.from(monitoring))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("'monitoring'");
+
+        JsonObject url = config();
+        url.getJsonObject("services").getJsonObject("promo").put("url", 8082);
+        assertThatThrownBy(() -> ServiceSettings.from(url))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("services.promo.url");
+    }
+
+    @Test
+    @DisplayName("Should nest dotted keys into their sections, with the dotted key winning")
+    void testNestDottedKeys() {
+        JsonObject merged = config()
+                .put("http", new JsonObject().put("port", 8080))
+                .put("http.port", 9090)
+                .put("grpc.maxBatchSize", 10);
+
+        JsonObject nested = ServiceSettings.nest(merged);
+        ServiceSettings settings = ServiceSettings.from(nested);
+
+        assertThat(nested.containsKey("http.port")).isFalse();
+        assertThat(settings.getEndpoints().getHttpPort()).isEqualTo(9090);
+        assertThat(settings.getEndpoints().getGrpcMaxBatchSize()).isEqualTo(10);
+        assertThat(settings.getEndpoints().getEventBusAddress()).isNull();
+
+        ServiceSettings changed = ServiceSettings.from(ServiceSettings.nest(nested.copy()
+                .put("eventbus.address", "loyalty.points.quote.other")));
+        assertThat(changed.diff(settings)).containsExactly("eventbus.address: null -> loyalty.points.quote.other");
+    }
+}
@@ -0,0 +1,119 @@
+package com.loyalty.logic;
+
+import com.loyalty.model.QuoteRequest;
+import com.loyalty.model.QuoteResponse;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class QuoteCalculatorTest {
+
+    private final QuoteCalculator calculator = new QuoteCalculator();
+
+    private static QuoteRequest request(double fare, String currency, String tier, String cabin) {
+        QuoteRequest request = new QuoteRequest();
+        request.setFareAmount(fare);
+        request.setCurrency(currency);
+        request.setCustomerTier(tier);
+        request.setCabinClass(cabin);
+        return request;
+    }
+
+    @Test
+    @DisplayName("Default rules should match the legacy tier multipliers and cap")
+    void testDefaultRules() {
+        PointsRuleSet rules = PointsRuleSet.defaults();
+
+        QuoteResponse response = calculator.calculate(rules, request(1234.50, "AED", "SILVER", null), 3.67, 308,
+                List.of());
+        assertThat(response.getBasePoints()).isEqualTo(4530);
+        assertThat(response.getTierBonus()).isEqualTo(679);
+        assertThat(response.getTotalPoints()).isEqualTo(5517);
+
+        QuoteResponse capped = calculator.calculate(rules, request(100000, "USD", "PLATINUM", null), 1.0, 0,
+                List.of());
+        assertThat(capped.getTotalPoints()).isEqualTo(50000);
+        assertThat(capped.getWarnings()).contains("POINTS_CAPPED_AT_MAX");
+    }
+
+    @Test
+    @DisplayName("Should apply cabin and currency multipliers with overrides taking precedence")
+    void testCabinCurrencyAndOverrides() {
+        PointsRuleSet rules = PointsRuleSet.compile(new JsonObject()
+                .put("tiers", new JsonObject().put("NONE", 0.0).put("GOLD", 0.30))
+                .put("cabins", new JsonObject().put("ECONOMY", 1.0).put("BUSINESS", 1.5))
+                .put("currencies", new JsonObject().put("EUR", 2.0))
+                .put("overrides", new JsonArray()
+                        .add(new JsonObject().put("tier", "GOLD").put("cabin", "BUSINESS").put("tierBonus", 0.5))));
+
+        QuoteResponse business = calculator.calculate(rules, request(100, "EUR", "GOLD", "business"), 1.0, 0,
+                List.of());
+        // Base: 100 * 1.5 (cabin) * 2.0 (currency) = 300, tier bonus from override: 300 * 0.5 = 150
+        assertThat(business.getBasePoints()).isEqualTo(300);
+        assertThat(business.getTierBonus()).isEqualTo(150);
+
+        QuoteResponse unknownCabin = calculator.calculate(rules, request(100, "USD", "GOLD", "LOUNGE"), 1.0, 0,
+                List.of());
+        assertThat(unknownCabin.getBasePoints()).isEqualTo(100);
+        assertThat(unknownCabin.getTierBonus()).isEqualTo(30);
+    }
+
+    @Test
+    @DisplayName("Should only grant the larger bonus when promo stacking is BEST_OF")
+    void testPromoStacking() {
+        PointsRuleSet rules = PointsRuleSet.compile(new JsonObject()
+                .put("maxPoints", 1000)
+                .put("promo", new JsonObject().put("stacking", "BEST_OF").put("maxBonus", 200)));
+
+        QuoteResponse promoWins = calculator.calculate(rules, request(500, "USD", "SILVER", null), 1.0, 300,
+                List.of());
+        assertThat(promoWins.getTierBonus()).isEqualTo(0);
+        assertThat(promoWins.getPromoBonus()).isEqualTo(200);
+        assertThat(promoWins.getTotalPoints()).isEqualTo(700);
+
+        QuoteResponse tierWins = calculator.calculate(rules, request(900, "USD", "PLATINUM", null), 1.0, 100,
+                List.of());
+        assertThat(tierWins.getTierBonus()).isEqualTo(450);
+        assertThat(tierWins.getPromoBonus()).isEqualTo(0);
+        assertThat(tierWins.getTotalPoints()).isEqualTo(1000);
+    }
+
+    @Test
+    @DisplayName("Should keep the previous rule set when a reload does not compile")
+    void testInvalidReloadKeepsPreviousRules() {
+        PointsRuleEngine engine = new PointsRuleEngine();
+        assertThat(engine.reload(new JsonObject().put("maxPoints", 1000))).isTrue();
+        PointsRuleSet active = engine.current();
+
+        assertThatThrownBy(() -> engine.reload(new JsonObject()
+                .put("overrides", new JsonArray().add(new JsonObject().put("tier", "DIAMOND").put("tierBonus", 1.0)))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("DIAMOND");
+        assertThat(engine.current()).isSameAs(active);
+        assertThat(engine.reload(new JsonObject().put("maxPoints", 1000))).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should reject rule values of the wrong type with the key in the message")
+    void testWronglyTypedRules() {
+        assertThatThrownBy(() -> PointsRuleSet.compile(new JsonObject().put("maxPoints", "50k")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("maxPoints");
+        assertThatThrownBy(() -> PointsRuleSet.compile(new JsonObject().put("tiers", "GOLD")))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("tiers");
+        assertThatThrownBy(() -> PointsRuleSet.compile(new JsonObject()
+                .put("overrides", new JsonArray().add(new JsonObject().put("tier", "GOLD").put("earnMultiplier", "2")))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("earnMultiplier");
+        assertThatThrownBy(() -> PointsRuleSet.compile(new JsonObject().put("overrides", new JsonArray().add("GOLD"))))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("overrides[0]");
+    }
+}
@@ -0,0 +1,41 @@
+package com.loyalty.tracing;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class QuoteTraceTest {
+
+    private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+    private static final String PARENT_ID = "b7ad6b7169203331";
+
+    @Test
+    @DisplayName("Should continue the trace in a valid traceparent header")
+    void testContinuesValidTraceparent() {
+        QuoteTrace trace = QuoteTrace.fromTraceparent("00-" + TRACE_ID + "-" + PARENT_ID + "-01");
+
+        assertThat(trace.getTraceId()).isEqualTo(TRACE_ID);
+        assertThat(trace.toJson().getString("parentSpanId")).isEqualTo(PARENT_ID);
+    }
+
+    @Test
+    @DisplayName("Should start a new trace when the traceparent header is not valid hex or has all-zero ids")
+    void testRejectsInvalidTraceparent() {
+        String[] invalid = {
+                "00-" + TRACE_ID.toUpperCase() + "-" + PARENT_ID + "-01",
+                "00-0af7651916cd43dd8448eb211c80319z-" + PARENT_ID + "-01",
+                "00-" + TRACE_ID + "-b7ad6b716920333g-01",
+                "00-00000000000000000000000000000000-" + PARENT_ID + "-01",
+                "00-" + TRACE_ID + "-0000000000000000-01",
+                "ff-" + TRACE_ID + "-" + PARENT_ID + "-01",
+                "00-" + TRACE_ID + "-" + PARENT_ID,
+        };
+
+        for (String traceparent : invalid) {
+            QuoteTrace trace = QuoteTrace.fromTraceparent(traceparent);
+            assertThat(trace.getTraceId()).as(traceparent).isNotEqualTo(TRACE_ID).hasSize(32);
+            assertThat(trace.toJson().getString("parentSpanId")).as(traceparent).isNull();
+        }
+    }
+}
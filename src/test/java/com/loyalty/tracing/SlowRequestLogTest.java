@@ -0,0 +1,51 @@
+package com.loyalty.tracing;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SlowRequestLogTest {
+
+    private static QuoteTrace finished(String summary, long millis) throws InterruptedException {
+        QuoteTrace trace = QuoteTrace.start();
+        Thread.sleep(millis);
+        trace.finish("200", summary);
+        return trace;
+    }
+
+    private static JsonArray summaries(SlowRequestLog log) {
+        JsonArray summaries = new JsonArray();
+        log.toJson().forEach(entry -> summaries.add(((JsonObject) entry).getString("request")));
+        return summaries;
+    }
+
+    @Test
+    @DisplayName("Should keep only the slowest traces, slowest first")
+    void testKeepsSlowest() throws InterruptedException {
+        SlowRequestLog log = new SlowRequestLog(2, 60000);
+
+        log.record(finished("fast", 0));
+        log.record(finished("slowest", 30));
+        log.record(finished("slow", 15));
+        log.record(finished("faster", 0));
+
+        assertThat(summaries(log)).containsExactly("slowest", "slow");
+    }
+
+    @Test
+    @DisplayName("Should replace a trace that has left the window even with a faster one")
+    void testReplacesExpired() throws InterruptedException {
+        SlowRequestLog log = new SlowRequestLog(1, 60000);
+        log.record(finished("old", 20));
+
+        log.setWindowMillis(1);
+        Thread.sleep(5);
+        log.record(finished("recent", 0));
+
+        log.setWindowMillis(60000);
+        assertThat(summaries(log)).containsExactly("recent");
+    }
+}